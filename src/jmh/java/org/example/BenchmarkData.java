@@ -0,0 +1,160 @@
+package org.example;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Генератор синтетических входных файлов для бенчмарков.
+ * <p>
+ * Файлы повторяют структуру выгрузок подрядчика и агента: те же заголовки, ключевые колонки
+ * ({@value #KEY_COLUMN_FILE1} и {@value #KEY_COLUMN_FILE2}), около 80% совпадающих ключей,
+ * повторяющиеся ключи, даты, логические значения и формулы. Ширина дополняется колонками "Доп. N".
+ * Данные детерминированы (фиксированное зерно), поэтому прогоны сопоставимы между собой.
+ */
+public final class BenchmarkData {
+    public static final int KEY_COLUMN_FILE1 = 3;
+    public static final int KEY_COLUMN_FILE2 = 7;
+
+    private static final String[] HEADER_FILE1 = {"Структурное подразделение", "Содержание работ.Сводный код XYZ",
+            "Наименование МТР", "Код позиции", "Количество", "Ед.", "Вид работ", "Содержание работ", "Дата"};
+    private static final String[] HEADER_FILE2 = {"Подразделение ДО", "Код подрядчика", "ППП", "XYZ",
+            "Полное наименование", "Акт. кол.", "Ед. изм.", "Код позиции", "Вид работ", "Содержание работ"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Создает временный каталог для файлов бенчмарка.
+     *
+     * @return Путь к каталогу.
+     * @throws IOException Если каталог не удалось создать.
+     */
+    public static Path createDirectory() throws IOException {
+        return Files.createTempDirectory("datamerge-jmh");
+    }
+
+    /**
+     * Удаляет каталог бенчмарка вместе с файлами.
+     *
+     * @param directory Путь к каталогу.
+     * @throws IOException Если файлы не удалось удалить.
+     */
+    public static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Записывает файл в формате выгрузки подрядчика (ключ в колонке {@value #KEY_COLUMN_FILE1}).
+     *
+     * @param path    Путь к файлу; формат определяется расширением .xls или .xlsx.
+     * @param rows    Количество строк данных.
+     * @param width   Количество колонок (не меньше числа базовых заголовков).
+     * @param variant 0 - исходный файл; иначе каждая variant-я строка изменена, а каждая 10*variant-я пропущена.
+     * @throws IOException Если файл не удалось записать.
+     */
+    public static void writeContractorFile(Path path, int rows, int width, int variant) throws IOException {
+        Random random = new Random(42);
+        try (Workbook workbook = createWorkbook(path)) {
+            Sheet sheet = workbook.createSheet("Лист1");
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+            writeHeader(sheet, HEADER_FILE1, width);
+            int rowNum = 1;
+            for (int i = 1; i <= rows; i++) {
+                if (variant > 0 && i % (variant * 10) == 0) {
+                    continue;
+                }
+                boolean changed = variant > 0 && i % variant == 0;
+                Row row = sheet.createRow(rowNum++);
+                row.createCell(0).setCellValue("Подр " + (i % 5));
+                row.createCell(1).setCellValue("XYZ" + (i % 7));
+                row.createCell(2).setCellValue(changed ? "МТР " + i + " (изм.)" : "МТР " + i);
+                row.createCell(KEY_COLUMN_FILE1).setCellValue("K" + (i % (rows - rows / 10 + 1)));
+                row.createCell(4).setCellValue(random.nextInt(100));
+                row.createCell(5).setCellValue("шт");
+                if (i % 3 != 0) {
+                    row.createCell(6).setCellValue("Вид " + (i % 4));
+                }
+                row.createCell(7).setCellValue(i % 2 == 0);
+                Cell date = row.createCell(8);
+                date.setCellValue(new Date(1_700_000_000_000L + i * 86_400_000L));
+                date.setCellStyle(dateStyle);
+                writeFiller(row, HEADER_FILE1.length, width, i);
+            }
+            write(workbook, path);
+        }
+    }
+
+    /**
+     * Записывает файл в формате выгрузки агента (ключ в колонке {@value #KEY_COLUMN_FILE2}).
+     *
+     * @param path  Путь к файлу; формат определяется расширением .xls или .xlsx.
+     * @param rows  Количество строк данных.
+     * @param width Количество колонок (не меньше числа базовых заголовков).
+     * @throws IOException Если файл не удалось записать.
+     */
+    public static void writeAgentFile(Path path, int rows, int width) throws IOException {
+        Random random = new Random(43);
+        try (Workbook workbook = createWorkbook(path)) {
+            Sheet sheet = workbook.createSheet("Лист1");
+            writeHeader(sheet, HEADER_FILE2, width);
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("ДО " + (i % 5));
+                row.createCell(1).setCellValue("П" + i);
+                row.createCell(2).setCellValue("ППП" + (i % 9));
+                row.createCell(3).setCellValue("X" + (i % 3));
+                row.createCell(4).setCellValue("Полн " + i);
+                row.createCell(5).setCellValue(random.nextDouble());
+                row.createCell(6).setCellValue("шт");
+                row.createCell(KEY_COLUMN_FILE2).setCellValue("K" + (i + rows / 5));
+                row.createCell(8).setCellFormula("F" + (i + 1) + "*2");
+                row.createCell(9).setCellValue("Содерж " + i);
+                writeFiller(row, HEADER_FILE2.length, width, i);
+            }
+            write(workbook, path);
+        }
+    }
+
+    private static Workbook createWorkbook(Path path) {
+        return path.toString().endsWith(".xls") ? new HSSFWorkbook() : new SXSSFWorkbook();
+    }
+
+    private static void writeHeader(Sheet sheet, String[] baseHeader, int width) {
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < Math.max(width, baseHeader.length); i++) {
+            header.createCell(i).setCellValue(i < baseHeader.length ? baseHeader[i] : "Доп. " + (i - baseHeader.length + 1));
+        }
+    }
+
+    private static void writeFiller(Row row, int from, int width, int rowIndex) {
+        for (int i = from; i < width; i++) {
+            if ((i & 1) == 0) {
+                row.createCell(i).setCellValue(rowIndex * 0.5 + i);
+            } else {
+                row.createCell(i).setCellValue("Значение " + (rowIndex % 100) + "-" + i);
+            }
+        }
+    }
+
+    private static void write(Workbook workbook, Path path) throws IOException {
+        try (OutputStream out = new FileOutputStream(path.toFile())) {
+            workbook.write(out);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построчное сравнение двух версий выгрузки, загруженных в колоночные таблицы ({@link ExcelComparator#compareTables}),
+ * и само сравнение без записи результата ({@link DiffEngine#compare}).
+ * Второй файл отличается каждой 50-й строкой и не содержит каждой 500-й.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class CompareBenchmark {
+    private static final String MISSING_SHEET = "Отсутствующие строки";
+    private static final String ADDED_SHEET = "Добавленные строки";
+    private static final String CHANGED_SHEET = "Измененные строки";
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"10", "40"})
+    public int width;
+
+    @Param({"xls", "xlsx"})
+    public String format;
+
+    private ColumnarTable table1;
+    private ColumnarTable table2;
+    private Workbook outputWorkbook;
+    private StyleRegistry styles;
+    private Sheet missingRowsSheet;
+    private Sheet addedRowsSheet;
+    private Sheet changedRowsSheet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path directory = BenchmarkData.createDirectory();
+        try {
+            Path file1 = directory.resolve("contractor." + format);
+            Path file2 = directory.resolve("contractor_changed." + format);
+            BenchmarkData.writeContractorFile(file1, rows, width, 0);
+            BenchmarkData.writeContractorFile(file2, rows, width, 50);
+            KeySpec keySpec = KeySpec.column(BenchmarkData.KEY_COLUMN_FILE1);
+            table1 = ExcelUtils.extractData(RowSource.streaming(file1.toString()), keySpec);
+            table2 = ExcelUtils.extractData(RowSource.streaming(file2.toString()), keySpec);
+        } finally {
+            BenchmarkData.deleteDirectory(directory);
+        }
+        // Одна книга результата на прогон; листы пересоздаются перед каждым вызовом
+        outputWorkbook = new XSSFWorkbook();
+        styles = new StyleRegistry(outputWorkbook);
+    }
+
+    @Setup(Level.Invocation)
+    public void createOutputSheets() {
+        for (String name : new String[]{MISSING_SHEET, ADDED_SHEET, CHANGED_SHEET}) {
+            int index = outputWorkbook.getSheetIndex(name);
+            if (index != -1) {
+                outputWorkbook.removeSheetAt(index);
+            }
+        }
+        missingRowsSheet = outputWorkbook.createSheet(MISSING_SHEET);
+        addedRowsSheet = outputWorkbook.createSheet(ADDED_SHEET);
+        changedRowsSheet = outputWorkbook.createSheet(CHANGED_SHEET);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        outputWorkbook.close();
+    }
+
+    @Benchmark
+    public Sheet compareTables() {
+        ExcelComparator.compareTables(table1, table2, missingRowsSheet, addedRowsSheet, changedRowsSheet, styles);
+        return changedRowsSheet;
+    }
+
+    @Benchmark
+    public DiffEngine.DiffResult diff() {
+        return DiffEngine.compare(table1, table2);
+    }
+}
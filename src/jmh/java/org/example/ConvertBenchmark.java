@@ -0,0 +1,48 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Конвертация XLS в XLSX ({@link XlsToXlsxConverter#convertXlsToXlsx}), включая запись результата на диск.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class ConvertBenchmark {
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"10", "40"})
+    public int width;
+
+    private Path directory;
+    private String inputPath;
+    private String outputPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createDirectory();
+        Path input = directory.resolve("contractor.xls");
+        BenchmarkData.writeContractorFile(input, rows, width, 0);
+        inputPath = input.toString();
+        outputPath = directory.resolve("contractor.xlsx").toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public String convertXlsToXlsx() throws IOException {
+        XlsToXlsxConverter.convertXlsToXlsx(inputPath, outputPath);
+        return outputPath;
+    }
+}
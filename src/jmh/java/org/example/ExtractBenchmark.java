@@ -0,0 +1,55 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Потоковое чтение входного файла в колоночную таблицу ({@link ExcelUtils#extractData(String, int)})
+ * и повторное чтение того же файла из {@link TableCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class ExtractBenchmark {
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"10", "40"})
+    public int width;
+
+    private Path directory;
+    private String filePath;
+    private TableCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkData.createDirectory();
+        Path file = directory.resolve("contractor.xlsx");
+        BenchmarkData.writeContractorFile(file, rows, width, 0);
+        filePath = file.toString();
+        cache = new TableCache(directory.resolve("cache"), Long.MAX_VALUE);
+        // Запись кэша создается заранее, замеряется только повторное чтение
+        extractCached();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public ColumnarTable extractData() throws IOException {
+        return ExcelUtils.extractData(filePath, BenchmarkData.KEY_COLUMN_FILE1);
+    }
+
+    @Benchmark
+    public ColumnarTable extractCached() throws IOException {
+        return ExcelUtils.extractData(cache.cached(filePath, TableCache.sourceKind(true), RowSource.streaming(filePath)), KeySpec.column(BenchmarkData.KEY_COLUMN_FILE1));
+    }
+}
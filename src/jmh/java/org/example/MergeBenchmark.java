@@ -0,0 +1,112 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Этапы объединения над загруженными таблицами: соединение по ключу, сортировка столбцов
+ * и группировка. Чтение файлов в замер не входит.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class MergeBenchmark {
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"10", "40"})
+    public int width;
+
+    private ColumnarTable table1;
+    private ColumnarTable table2;
+    private TableView merged;
+    private TableView sorted;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path directory = BenchmarkData.createDirectory();
+        try {
+            Path file1 = directory.resolve("contractor.xlsx");
+            Path file2 = directory.resolve("agent.xlsx");
+            BenchmarkData.writeContractorFile(file1, rows, width, 0);
+            BenchmarkData.writeAgentFile(file2, rows, width);
+            table1 = ExcelUtils.extractData(file1.toString(), BenchmarkData.KEY_COLUMN_FILE1);
+            table2 = ExcelUtils.extractData(file2.toString(), BenchmarkData.KEY_COLUMN_FILE2);
+        } finally {
+            BenchmarkData.deleteDirectory(directory);
+        }
+        MergePipeline pipeline = new MergePipeline(table1, table2)
+                .merge(JoinMode.FULL_OUTER)
+                .sortColumns(MergePipeline.MERGED_SHEET, MergePipeline.SORTED_SHEET, ColumnPairingRules.defaults());
+        merged = pipeline.getSheet(MergePipeline.MERGED_SHEET);
+        sorted = pipeline.getSheet(MergePipeline.SORTED_SHEET);
+    }
+
+    /**
+     * Рабочая книга с листом объединенных данных, создаваемая заново для каждого вызова.
+     */
+    @State(Scope.Thread)
+    public static class MergedWorkbook {
+        Workbook workbook;
+
+        @Setup(Level.Invocation)
+        public void setUp(MergeBenchmark benchmark) {
+            workbook = new XSSFWorkbook();
+            ExcelUtils.writeSheet(workbook, MergePipeline.MERGED_SHEET, benchmark.merged);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            workbook.close();
+        }
+    }
+
+    /**
+     * Пустая рабочая книга для результата группировки, создаваемая заново для каждого вызова.
+     */
+    @State(Scope.Thread)
+    public static class EmptyWorkbook {
+        Workbook workbook;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            workbook = new XSSFWorkbook();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            workbook.close();
+        }
+    }
+
+    @Benchmark
+    public MergePipeline join() {
+        return new MergePipeline(table1, table2).merge(JoinMode.FULL_OUTER);
+    }
+
+    @Benchmark
+    public JoinEngine.JoinResult joinEngine() {
+        return JoinEngine.join(table1, table2);
+    }
+
+    @Benchmark
+    public Sheet sortColumnsByHeaders(MergedWorkbook state) {
+        // Та же перестановка, что и в sortColumnsByHeaders, без записи рабочей книги в файл
+        return TableColumnSorter.sortColumns(state.workbook, MergePipeline.MERGED_SHEET, ColumnPairingRules.defaults());
+    }
+
+    @Benchmark
+    public Workbook groupAndCountRows(EmptyWorkbook state) {
+        GroupRowsByPositionAndCount.groupAndCountRows(sorted, state.workbook, "GroupedData", "ППП (from file2)");
+        return state.workbook;
+    }
+}
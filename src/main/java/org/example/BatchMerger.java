@@ -0,0 +1,300 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Пакетное объединение многих пар выгрузок подрядчика и агента.
+ * <p>
+ * Пары задаются манифестом или собираются из каталога по меткам в именах файлов. Каждая пара объединяется
+ * через {@link ExcelMerger#mergeFiles} в отдельный файл результата. Одновременно обрабатывается не более
+ * {@code datamerge.batch.parallelism} пар, а перед запуском пара резервирует оценку нужной памяти
+ * ({@link MemoryBudget}), поэтому крупные файлы не запускаются все сразу. После обработки в каталог
+ * результатов пишется сводный отчет {@value #SUMMARY_FILE} со временем и количеством строк по каждой паре.
+ */
+public class BatchMerger {
+    private static final Logger logger = LoggerFactory.getLogger(BatchMerger.class);
+    private static final String SUMMARY_FILE = "batch-summary.csv";
+    // Метки в именах файлов, по которым файлы каталога делятся на файлы подрядчика и агента
+    private static final String MARKER_FILE1 = System.getProperty("datamerge.batch.marker1", "Подрядчик");
+    private static final String MARKER_FILE2 = System.getProperty("datamerge.batch.marker2", "Агент");
+    // Число одновременно объединяемых пар
+    private static final int PARALLELISM = Integer.getInteger("datamerge.batch.parallelism",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    // Оценка памяти на пару: суммарный размер входных файлов, умноженный на коэффициент
+    private static final int MEMORY_FACTOR = Integer.getInteger("datamerge.batch.memoryFactor", 20);
+    // Доля максимального размера кучи, которую могут занимать одновременно обрабатываемые пары
+    private static final double MEMORY_SHARE = Double.parseDouble(System.getProperty("datamerge.batch.memoryShare", "0.7"));
+
+    /**
+     * Пакетное объединение.
+     *
+     * @param args файл манифеста или каталог с выгрузками, затем (необязательно) каталог результатов
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            logger.error("Не указан манифест или каталог с файлами для объединения.");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        Path outputDirectory = args.length > 1 ? Paths.get(args[1]) : (Files.isDirectory(input) ? input : input.toAbsolutePath().getParent());
+        try {
+            List<MergePair> pairs = Files.isDirectory(input) ? pairDirectory(input, outputDirectory) : readManifest(input, outputDirectory);
+            mergeAll(pairs, outputDirectory, PARALLELISM);
+        } catch (IOException e) {
+            logger.error("Ошибка при пакетном объединении", e);
+        }
+    }
+
+    /**
+     * Пара входных файлов и файл результата.
+     *
+     * @param file1  файл подрядчика
+     * @param file2  файл агента
+     * @param output файл результата
+     */
+    public record MergePair(Path file1, Path file2, Path output) {
+    }
+
+    /**
+     * Итог обработки пары: количество строк и время либо ошибка.
+     *
+     * @param pair   пара файлов
+     * @param result итог объединения или {@code null} при ошибке
+     * @param error  текст ошибки или {@code null}
+     */
+    public record PairReport(MergePair pair, ExcelMerger.MergeResult result, String error) {
+    }
+
+    /**
+     * Читает манифест: каждая строка - {@code файл1;файл2[;результат]}, пустые строки и строки с {@code #}
+     * пропускаются. Относительные пути входных файлов отсчитываются от каталога манифеста, результатов - от
+     * каталога результатов.
+     *
+     * @param manifest        Файл манифеста.
+     * @param outputDirectory Каталог результатов.
+     * @return Пары в порядке манифеста.
+     * @throws IOException Если манифест не удалось прочитать или строка некорректна.
+     */
+    public static List<MergePair> readManifest(Path manifest, Path outputDirectory) throws IOException {
+        Path base = manifest.toAbsolutePath().getParent();
+        List<MergePair> pairs = new ArrayList<>();
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split(";");
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IOException("Некорректная строка " + (i + 1) + " манифеста " + manifest + ": " + line);
+            }
+            Path file1 = base.resolve(parts[0].strip());
+            Path file2 = base.resolve(parts[1].strip());
+            Path output = parts.length == 3
+                    ? outputDirectory.resolve(parts[2].strip())
+                    : outputDirectory.resolve(pairName(file1.getFileName().toString(), MARKER_FILE1) + "_MergedData.xlsx");
+            pairs.add(new MergePair(file1, file2, output));
+        }
+        logger.info("Манифест {} прочитан: {} пар", manifest, pairs.size());
+        return pairs;
+    }
+
+    /**
+     * Собирает пары из файлов XLS и XLSX каталога: файл с меткой подрядчика и файл с меткой агента образуют
+     * пару, если их имена без метки и расширения совпадают. Файлы без пары пропускаются с предупреждением.
+     *
+     * @param directory       Каталог с выгрузками.
+     * @param outputDirectory Каталог результатов.
+     * @return Пары в порядке имен файлов.
+     * @throws IOException Если каталог не удалось прочитать.
+     */
+    public static List<MergePair> pairDirectory(Path directory, Path outputDirectory) throws IOException {
+        Map<String, Path> files1 = new LinkedHashMap<>();
+        Map<String, Path> files2 = new LinkedHashMap<>();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{xls,xlsx}")) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.contains(MARKER_FILE1)) {
+                putUnique(files1, pairName(name, MARKER_FILE1), file);
+            } else if (name.contains(MARKER_FILE2)) {
+                putUnique(files2, pairName(name, MARKER_FILE2), file);
+            }
+        }
+
+        List<MergePair> pairs = new ArrayList<>();
+        for (Map.Entry<String, Path> entry : files1.entrySet()) {
+            Path file2 = files2.remove(entry.getKey());
+            if (file2 == null) {
+                logger.warn("Для файла {} не найден парный файл с меткой '{}'", entry.getValue(), MARKER_FILE2);
+                continue;
+            }
+            pairs.add(new MergePair(entry.getValue(), file2, outputDirectory.resolve(entry.getKey() + "_MergedData.xlsx")));
+        }
+        for (Path file2 : files2.values()) {
+            logger.warn("Для файла {} не найден парный файл с меткой '{}'", file2, MARKER_FILE1);
+        }
+        logger.info("В каталоге {} найдено {} пар файлов", directory, pairs.size());
+        return pairs;
+    }
+
+    /**
+     * Объединяет все пары с ограниченным параллелизмом и учетом памяти и пишет сводный отчет.
+     * Ошибка в одной паре, в том числе нехватка памяти, не останавливает остальные, она попадает в отчет.
+     * При прерывании потока необработанные пары отменяются и отмечаются в отчете как прерванные.
+     *
+     * @param pairs           Пары файлов.
+     * @param outputDirectory Каталог результатов и отчета.
+     * @param parallelism     Число одновременно объединяемых пар.
+     * @return Итоги по парам в исходном порядке.
+     * @throws IOException Если не удалось создать каталог результатов или записать отчет.
+     */
+    public static List<PairReport> mergeAll(List<MergePair> pairs, Path outputDirectory, int parallelism) throws IOException {
+        Files.createDirectories(outputDirectory);
+        MemoryBudget budget = new MemoryBudget((long) (Runtime.getRuntime().maxMemory() * MEMORY_SHARE));
+        long start = System.nanoTime();
+
+        List<Future<PairReport>> tasks = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            for (MergePair pair : pairs) {
+                tasks.add(executor.submit(() -> mergePair(pair, budget)));
+            }
+            List<PairReport> reports = new ArrayList<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                reports.add(await(tasks.get(i), pairs.get(i)));
+            }
+            writeSummary(reports, outputDirectory.resolve(SUMMARY_FILE));
+            long failed = reports.stream().filter(report -> report.error() != null).count();
+            logger.info("Пакетное объединение завершено за {} мс: {} пар, ошибок {}",
+                    (System.nanoTime() - start) / 1_000_000, reports.size(), failed);
+            return reports;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static PairReport mergePair(MergePair pair, MemoryBudget budget) throws InterruptedException {
+        long estimate;
+        try {
+            estimate = (Files.size(pair.file1()) + Files.size(pair.file2())) * MEMORY_FACTOR;
+        } catch (IOException e) {
+            logger.error("Файлы пары {} + {} недоступны", pair.file1(), pair.file2(), e);
+            return new PairReport(pair, null, e.toString());
+        }
+        budget.acquire(estimate);
+        try {
+            logger.info("Объединение пары {} + {}", pair.file1().getFileName(), pair.file2().getFileName());
+            ExcelMerger.MergeResult result = ExcelMerger.mergeFiles(pair.file1().toString(), pair.file2().toString(), pair.output().toString());
+            return new PairReport(pair, result, null);
+        } catch (IOException | RuntimeException | Error e) {
+            // Память, занятая парой, освобождается вместе с ее данными, поэтому после OutOfMemoryError пакет продолжается
+            logger.error("Ошибка при объединении пары {} + {}", pair.file1(), pair.file2(), e);
+            return new PairReport(pair, null, e.toString());
+        } finally {
+            budget.release(estimate);
+        }
+    }
+
+    private static void writeSummary(List<PairReport> reports, Path summaryPath) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(summaryPath, StandardCharsets.UTF_8)) {
+            writer.write("file1;file2;output;status;rows_file1;rows_file2;matched;only_file1;only_file2;load_ms;total_ms");
+            writer.newLine();
+            for (PairReport report : reports) {
+                MergePair pair = report.pair();
+                writer.write(pair.file1().getFileName() + ";" + pair.file2().getFileName() + ";" + pair.output().getFileName() + ";");
+                ExcelMerger.MergeResult result = report.result();
+                if (result != null) {
+                    writer.write("OK;" + result.rowsFile1() + ";" + result.rowsFile2() + ";" + result.matchedRows() + ";"
+                            + result.onlyFile1() + ";" + result.onlyFile2() + ";" + result.loadMillis() + ";" + result.totalMillis());
+                } else {
+                    writer.write("ERROR " + report.error().replace(';', ',').replace('\n', ' ') + ";;;;;;;");
+                }
+                writer.newLine();
+            }
+        }
+        logger.info("Сводный отчет сохранен в файл {}", summaryPath);
+    }
+
+    /**
+     * Итог пары из ее задачи. Сбой задачи и прерывание ожидания превращаются в отчет об ошибке, чтобы сводный
+     * отчет был записан в любом случае; флаг прерывания сохраняется, и остальные задачи отменяются сразу.
+     */
+    private static PairReport await(Future<PairReport> task, MergePair pair) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(true);
+            return new PairReport(pair, null, "Пакетное объединение прервано");
+        } catch (ExecutionException e) {
+            logger.error("Ошибка при объединении пары {} + {}", pair.file1(), pair.file2(), e.getCause());
+            return new PairReport(pair, null, e.getCause().toString());
+        }
+    }
+
+    /**
+     * Имя пары: имя файла без метки и расширения.
+     */
+    private static String pairName(String fileName, String marker) {
+        String name = fileName.substring(0, fileName.lastIndexOf('.'));
+        return name.replace(marker, "");
+    }
+
+    private static void putUnique(Map<String, Path> files, String key, Path file) {
+        Path previous = files.putIfAbsent(key, file);
+        if (previous != null) {
+            logger.warn("Файл {} пропущен: для пары {} уже выбран файл {}", file, key, previous);
+        }
+    }
+
+    /**
+     * Бюджет памяти для одновременно обрабатываемых пар. Пара ждет, пока сумма оценок запущенных пар
+     * не позволит добавить ее оценку; если запущенных пар нет, пара допускается даже сверх бюджета,
+     * чтобы один крупный файл не блокировал пакет.
+     */
+    static class MemoryBudget {
+        private final long limit;
+        private long used;
+
+        MemoryBudget(long limit) {
+            this.limit = limit;
+        }
+
+        synchronized void acquire(long bytes) throws InterruptedException {
+            while (used > 0 && used + bytes > limit) {
+                wait();
+            }
+            used += bytes;
+        }
+
+        synchronized void release(long bytes) {
+            used -= bytes;
+            notifyAll();
+        }
+    }
+}
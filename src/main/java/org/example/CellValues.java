@@ -0,0 +1,153 @@
+package org.example;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Date1904Support;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Типизированный доступ к значениям ячеек POI и общие правила их строкового представления.
+ * <p>
+ * Даты выводятся в виде {@code yyyy-MM-dd} через общий потокобезопасный {@link DateTimeFormatter};
+ * строки дат кэшируются по номеру дня Excel, поэтому повторяющиеся даты не создают новых объектов.
+ * Числа и логические значения читаются по типу ячейки без преобразования в строку.
+ * <p>
+ * Книги могут использовать систему дат 1904 (так сохраняет Excel для Mac). Источники строк
+ * {@link SheetRowHandler} передают даты в системе 1900, поэтому таблицы в памяти не зависят от системы дат книги.
+ */
+public final class CellValues {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    // Дни Excel до 2173 года; более поздние даты форматируются без кэша
+    private static final int CACHED_DAYS = 100_000;
+    private static final int DAY_MILLISECONDS = 86_400_000;
+    // Гонка при заполнении безопасна: String неизменяем, в худшем случае строка будет создана дважды
+    private static final String[] DAY_STRINGS = new String[CACHED_DAYS];
+    // Номер дня 1904-01-01 в системе дат 1900: разница между системами дат
+    static final int DATE1904_OFFSET = 1462;
+
+    private CellValues() {
+    }
+
+    /**
+     * Возвращает значение ячейки в виде строки: даты в виде {@code yyyy-MM-dd}, числа через
+     * {@link Double#toString(double)}, для формул - текст формулы.
+     *
+     * @param cell Ячейка или {@code null}.
+     * @return Значение ячейки в виде строки; пустая строка для отсутствующих и пустых ячеек.
+     */
+    public static String asString(Cell cell) {
+        if (cell == null) {
+            return "";
+        }
+        return switch (cell.getCellType()) {
+            case STRING -> cell.getStringCellValue();
+            case NUMERIC -> DateUtil.isCellDateFormatted(cell)
+                    ? formatDate(cell.getNumericCellValue(), isDate1904(cell.getSheet().getWorkbook()))
+                    : Double.toString(cell.getNumericCellValue());
+            case BOOLEAN -> bool(cell) ? "true" : "false";
+            case FORMULA -> cell.getCellFormula();
+            case BLANK -> "";
+            default -> cell.toString();
+        };
+    }
+
+    /**
+     * Форматирует дату Excel в системе дат 1900 (номер дня с дробной частью времени) в виде {@code yyyy-MM-dd}.
+     *
+     * @param excelDate Дата Excel.
+     * @return Дата в виде строки; пустая строка, если число не является допустимой датой.
+     */
+    public static String formatDate(double excelDate) {
+        return formatDate(excelDate, false);
+    }
+
+    /**
+     * Форматирует дату Excel в виде {@code yyyy-MM-dd}.
+     *
+     * @param excelDate Дата Excel.
+     * @param use1904   Дата записана в системе дат 1904.
+     * @return Дата в виде строки; пустая строка, если число не является допустимой датой.
+     */
+    public static String formatDate(double excelDate, boolean use1904) {
+        if (use1904) {
+            excelDate += DATE1904_OFFSET;
+        }
+        if (!(excelDate >= 0 && excelDate < CACHED_DAYS - 1)) {
+            LocalDateTime date = DateUtil.getLocalDateTime(excelDate);
+            return date == null ? "" : date.format(DATE_FORMAT);
+        }
+        int day = (int) excelDate;
+        // Время округляется до миллисекунд так же, как в DateUtil: 23:59:59.9996 - уже следующий день
+        if ((int) ((excelDate - day) * DAY_MILLISECONDS + 0.5) >= DAY_MILLISECONDS) {
+            day++;
+        }
+        String value = DAY_STRINGS[day];
+        if (value == null) {
+            LocalDateTime date = DateUtil.getLocalDateTime(day);
+            value = date == null ? "" : date.format(DATE_FORMAT);
+            DAY_STRINGS[day] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Числовое значение ячейки без преобразования в строку. Даты возвращаются номером дня в системе дат 1900
+     * независимо от системы дат книги; для формул - кэшированный числовой результат.
+     *
+     * @param cell Ячейка или {@code null}.
+     * @return Число или {@link Double#NaN}, если ячейка не содержит числа.
+     */
+    public static double number(Cell cell) {
+        if (cell == null) {
+            return Double.NaN;
+        }
+        CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType() : cell.getCellType();
+        if (type != CellType.NUMERIC) {
+            return Double.NaN;
+        }
+        double value = cell.getNumericCellValue();
+        return DateUtil.isCellDateFormatted(cell) && isDate1904(cell.getSheet().getWorkbook()) ? value + DATE1904_OFFSET : value;
+    }
+
+    /**
+     * Логическое значение ячейки; для формул - кэшированный логический результат.
+     *
+     * @param cell Ячейка или {@code null}.
+     * @return Значение или {@code false}, если ячейка не содержит логического значения.
+     */
+    public static boolean bool(Cell cell) {
+        if (cell == null) {
+            return false;
+        }
+        CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType() : cell.getCellType();
+        return type == CellType.BOOLEAN && cell.getBooleanCellValue();
+    }
+
+    /**
+     * Ячейка содержит число, отформатированное как дата.
+     *
+     * @param cell Ячейка или {@code null}.
+     * @return {@code true} для числовой ячейки с форматом даты.
+     */
+    public static boolean isDate(Cell cell) {
+        return cell != null && cell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell);
+    }
+
+    /**
+     * Книга использует систему дат 1904.
+     *
+     * @param workbook Рабочая книга.
+     * @return {@code true}, если даты книги отсчитываются от 1904-01-01.
+     */
+    public static boolean isDate1904(Workbook workbook) {
+        if (workbook instanceof HSSFWorkbook hssfWorkbook) {
+            return hssfWorkbook.getInternalWorkbook().isUsing1904DateWindowing();
+        }
+        return workbook instanceof Date1904Support support && support.isDate1904();
+    }
+}
@@ -0,0 +1,97 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Основа текстовых приемников различий: записи собираются в {@link StringBuilder}, кодируются в UTF-8 в
+ * буфер фиксированного размера и сбрасываются в {@link FileChannel}, когда буфер заполнен.
+ */
+abstract class ChannelDiffSink implements DiffSink {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    protected final ColumnarTable table1;
+    protected final ColumnarTable table2;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder record = new StringBuilder(256);
+
+    ChannelDiffSink(Path file, ColumnarTable table1, ColumnarTable table2) throws IOException {
+        this.table1 = table1;
+        this.table2 = table2;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void accept(DiffEngine.Difference difference) throws IOException {
+        record.setLength(0);
+        format(difference, record);
+        write(record);
+    }
+
+    /**
+     * Добавляет к записи текст различия вместе с переводом строки.
+     */
+    protected abstract void format(DiffEngine.Difference difference, StringBuilder record);
+
+    /**
+     * Ключ различия из индекса той таблицы, к которой он относится.
+     */
+    protected String key(DiffEngine.Difference difference) {
+        return difference.kind() == DiffEngine.Kind.ADDED
+                ? table2.keyIndex().key(difference.keyId())
+                : table1.keyIndex().key(difference.keyId());
+    }
+
+    /**
+     * Заголовок столбца по первой таблице, а если столбца в ней нет - по второй.
+     */
+    protected String header(int column) {
+        String[] header = column < table1.header().length ? table1.header() : table2.header();
+        return column < header.length ? header[column] : "";
+    }
+
+    /**
+     * Записывает текст, например заголовок файла.
+     */
+    protected void write(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flushBuffer();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            flushBuffer();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Правила расположения столбцов: пары столбцов, которые выводятся рядом в начале листа, остальные столбцы
+ * следуют за ними в исходном порядке.
+ * <p>
+ * Правила задаются файлом JSON (путь в свойстве {@code datamerge.columnRules}), без него используются
+ * правила по умолчанию. Каждая пара - массив из двух шаблонов; шаблон - строка (вхождение в заголовок)
+ * или объект с одним полем {@code exact}, {@code prefix}, {@code contains} или {@code regex}:
+ * <pre>
+ * {"pairs": [
+ *   ["Код позиции", "Код подрядчика"],
+ *   [{"prefix": "Количество"}, {"regex": "^Ед\\.( изм\\.)? \\(from file1\\)$"}]
+ * ]}
+ * </pre>
+ * Шаблону соответствует первый подходящий заголовок листа. Все шаблоны компилируются в один
+ * {@link HeaderIndex}, поэтому порядок столбцов вычисляется за один проход по заголовкам.
+ */
+public class ColumnPairingRules {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnPairingRules.class);
+
+    // Пары заголовков, которые нужно расположить рядом (правила по умолчанию)
+    private static final String[][] DEFAULT_PAIRS = {
+            {"Структурное подразделение", "Подразделение ДО"},
+            {"Код позиции", "Код подрядчика"},
+            {"Инвентарный номер", "Инм.№"},
+            {"Наименование МТР", "Полное наименование"},
+            {"Содержание работ.Сводный код XYZ", "XYZ (from file2)"},
+            {"Объект работ", "Наименование объекта"},
+            {"Содержание работ (from file1)", "Содержание работ (from file2)"},
+            {"Спецификация поставщика (from file1)", "№ спец (from file2)"},
+            {"Поставщик (from file1)", "Поставщик (from file2)"},
+            {"Доходный договор (from file1)", "№ договора подряда (from file2)"},
+            {"Количество (from file1)", "Ед. (from file1)"},
+            {"Акт. кол. (from file2)", "Ед. изм. (from file2)"},
+            {"Вид работ (from file1)", "Вид работ (from file2)"},
+            {"Принципал", "ДО (from file2)"},
+            {"ППП", "Код позиции"}
+    };
+
+    /**
+     * Вид сопоставления шаблона с заголовком.
+     */
+    public enum MatchType {
+        /** Заголовок равен шаблону. */
+        EXACT,
+        /** Заголовок начинается с шаблона. */
+        PREFIX,
+        /** Заголовок содержит шаблон. */
+        CONTAINS,
+        /** В заголовке найдено регулярное выражение. */
+        REGEX
+    }
+
+    /**
+     * Шаблон заголовка.
+     *
+     * @param type    Вид сопоставления.
+     * @param pattern Текст шаблона или регулярное выражение.
+     */
+    public record Matcher(MatchType type, String pattern) {
+
+        public Matcher {
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Шаблон заголовка не может быть пустым.");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return type == MatchType.CONTAINS ? pattern : type.name().toLowerCase(Locale.ROOT) + ":" + pattern;
+        }
+    }
+
+    /**
+     * Пара столбцов, выводимых рядом.
+     *
+     * @param first  Шаблон первого столбца.
+     * @param second Шаблон второго столбца.
+     */
+    public record Pair(Matcher first, Matcher second) {
+    }
+
+    private final List<Pair> pairs;
+    private final HeaderIndex index;
+
+    public ColumnPairingRules(List<Pair> pairs) {
+        this.pairs = List.copyOf(pairs);
+        List<Matcher> matchers = new ArrayList<>(pairs.size() * 2);
+        for (Pair pair : pairs) {
+            matchers.add(pair.first());
+            matchers.add(pair.second());
+        }
+        this.index = new HeaderIndex(matchers);
+    }
+
+    /**
+     * Правила по умолчанию: пары столбцов объединенной выгрузки, заголовки сопоставляются по вхождению.
+     *
+     * @return Правила.
+     */
+    public static ColumnPairingRules defaults() {
+        List<Pair> pairs = new ArrayList<>(DEFAULT_PAIRS.length);
+        for (String[] pair : DEFAULT_PAIRS) {
+            pairs.add(new Pair(new Matcher(MatchType.CONTAINS, pair[0]), new Matcher(MatchType.CONTAINS, pair[1])));
+        }
+        return new ColumnPairingRules(pairs);
+    }
+
+    /**
+     * Правила из файла, указанного в свойстве {@code datamerge.columnRules}, или правила по умолчанию.
+     * Файл читается при каждом вызове, поэтому ошибка в нем сообщается вызывающему, а не при загрузке класса.
+     *
+     * @return Правила.
+     * @throws IOException Если файл правил не удалось прочитать или он не соответствует формату правил.
+     */
+    public static ColumnPairingRules configured() throws IOException {
+        String path = System.getProperty("datamerge.columnRules");
+        if (path == null || path.isEmpty()) {
+            return defaults();
+        }
+        try {
+            ColumnPairingRules rules = load(Paths.get(path));
+            logger.info("Правила расположения столбцов загружены из {} ({} пар).", path, rules.pairs.size());
+            return rules;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Некорректный файл правил расположения столбцов " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Загружает правила из файла JSON.
+     *
+     * @param file Файл правил.
+     * @return Правила.
+     * @throws IOException              Если файл не удалось прочитать.
+     * @throws IllegalArgumentException Если файл не соответствует формату правил.
+     */
+    public static ColumnPairingRules load(Path file) throws IOException {
+        Object root = JsonReader.parse(Files.readString(file, StandardCharsets.UTF_8));
+        if (!(root instanceof Map<?, ?> object) || !(object.get("pairs") instanceof List<?> items)) {
+            throw new IllegalArgumentException("Ожидался объект с массивом \"pairs\".");
+        }
+        List<Pair> pairs = new ArrayList<>(items.size());
+        for (Object item : items) {
+            if (!(item instanceof List<?> pair) || pair.size() != 2) {
+                throw new IllegalArgumentException("Пара должна быть массивом из двух шаблонов: " + item);
+            }
+            pairs.add(new Pair(parseMatcher(pair.get(0)), parseMatcher(pair.get(1))));
+        }
+        return new ColumnPairingRules(pairs);
+    }
+
+    private static Matcher parseMatcher(Object value) {
+        if (value instanceof String text) {
+            return new Matcher(MatchType.CONTAINS, text);
+        }
+        if (value instanceof Map<?, ?> object && object.size() == 1) {
+            Map.Entry<?, ?> entry = object.entrySet().iterator().next();
+            if (entry.getValue() instanceof String pattern) {
+                try {
+                    return new Matcher(MatchType.valueOf(entry.getKey().toString().toUpperCase(Locale.ROOT)), pattern);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Неизвестный вид шаблона: " + entry.getKey());
+                }
+            }
+        }
+        throw new IllegalArgumentException("Шаблон должен быть строкой или объектом с одним полем exact, prefix, contains или regex: " + value);
+    }
+
+    public List<Pair> pairs() {
+        return pairs;
+    }
+
+    /**
+     * Вычисляет порядок столбцов: сначала пары связанных столбцов, затем остальные в исходном порядке.
+     * Столбец может входить в несколько пар, поэтому индексы в результате могут повторяться.
+     *
+     * @param headers   Заголовки исходного листа.
+     * @param sheetName Имя листа (для журнала).
+     * @return Индексы исходных столбцов в порядке вывода.
+     */
+    public int[] columnOrder(String[] headers, String sheetName) {
+        int[] found = index.resolve(headers);
+        boolean[] paired = new boolean[headers.length];
+        IntList order = new IntList(headers.length + pairs.size() * 2);
+        for (int i = 0; i < pairs.size(); i++) {
+            int index1 = found[2 * i];
+            int index2 = found[2 * i + 1];
+            if (index1 != -1 && index2 != -1) {
+                order.add(index1);
+                order.add(index2);
+                paired[index1] = true;
+                paired[index2] = true;
+            } else {
+                logger.warn("Заголовки '{}' и '{}' не найдены в листе '{}'", pairs.get(i).first(), pairs.get(i).second(), sheetName);
+            }
+        }
+        for (int i = 0; i < headers.length; i++) {
+            if (!paired[i]) {
+                order.add(i);
+            }
+        }
+        return order.toArray();
+    }
+}
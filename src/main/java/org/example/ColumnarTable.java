@@ -0,0 +1,462 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+import java.util.*;
+
+/**
+ * Компактное колоночное представление первого листа файла.
+ * <p>
+ * Значения хранятся по столбцам в примитивных массивах: числа - в {@code double[]}, строки - в виде
+ * кодов {@code int[]} общего словаря, признаки пустых, логических и датовых ячеек - в {@link BitSet}.
+ * На ячейку приходится несколько байт вместо сотен байт у объектов POI, поэтому исходную рабочую
+ * книгу можно закрыть сразу после загрузки. Строки адресуются номером от 0 до {@link #rowCount()} - 1,
+ * строка заголовка в данные не входит.
+ */
+public class ColumnarTable implements TableView {
+    private final String[] header;
+    private final Column[] columns;
+    private final String[] dictionary;
+    private final int rowCount;
+    private final long[] rowHashes;
+    private final KeySpec keySpec;
+    private final KeyIndex keyIndex = new KeyIndex();
+
+    private ColumnarTable(String[] header, Column[] columns, String[] dictionary, int rowCount, long[] rowHashes, KeySpec keySpec) {
+        this.header = header;
+        this.columns = columns;
+        this.dictionary = dictionary;
+        this.rowCount = rowCount;
+        this.rowHashes = rowHashes;
+        this.keySpec = keySpec;
+        // Ключ каждой строки кодируется один раз; дальше соединение работает с байтами и хешами индекса
+        KeyEncoder encoder = new KeyEncoder(keySpec);
+        for (int row = 0; row < rowCount; row++) {
+            keyIndex.add(encoder.encode(this, row), row);
+        }
+    }
+
+    /**
+     * Создает построитель таблицы, который принимает строки от источника через {@link SheetRowHandler}.
+     *
+     * @param keySpec Описание ключа.
+     * @return Построитель таблицы.
+     */
+    public static Builder builder(KeySpec keySpec) {
+        return new Builder(keySpec);
+    }
+
+    @Override
+    public String[] header() {
+        return header;
+    }
+
+    @Override
+    public int columnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Возвращает индекс строк по ключу. Повторяющиеся ключи сохраняют все свои строки.
+     *
+     * @return Индекс по ключу.
+     */
+    public KeyIndex keyIndex() {
+        return keyIndex;
+    }
+
+    public KeySpec keySpec() {
+        return keySpec;
+    }
+
+    /**
+     * Возвращает 64-битный отпечаток строки, вычисленный при загрузке: номер столбца, тип и значение каждой
+     * непустой ячейки. Типы различаются так же, как в {@link #sameValue}, поэтому строки с разными
+     * отпечатками всегда различаются хотя бы в одной ячейке. Совпадение отпечатков считается равенством строк.
+     *
+     * @param row Номер строки.
+     * @return Отпечаток строки.
+     */
+    public long rowHash(int row) {
+        return rowHashes[row];
+    }
+
+    /**
+     * Сравнивает значения ячеек двух таблиц: тип (пустая, число, дата, логическое, строка) и значение.
+     * Дата и число с тем же значением различаются, так как выводятся по-разному, а числа сравниваются
+     * по {@link Double#compare}; правило совпадает с отпечатком {@link #rowHash(int)}.
+     *
+     * @param row        Номер строки в этой таблице.
+     * @param other      Другая таблица.
+     * @param otherRow   Номер строки в другой таблице.
+     * @param column     Индекс колонки (один и тот же в обеих таблицах).
+     * @return {@code true}, если значения равны.
+     */
+    public boolean sameValue(int row, ColumnarTable other, int otherRow, int column) {
+        boolean blank = isBlank(row, column);
+        if (blank || other.isBlank(otherRow, column)) {
+            return blank && other.isBlank(otherRow, column);
+        }
+        if (isNumeric(row, column)) {
+            return other.isNumeric(otherRow, column) && isDate(row, column) == other.isDate(otherRow, column)
+                    && Double.compare(getNumber(row, column), other.getNumber(otherRow, column)) == 0;
+        }
+        if (isBoolean(row, column)) {
+            return other.isBoolean(otherRow, column) && getBoolean(row, column) == other.getBoolean(otherRow, column);
+        }
+        return other.isString(otherRow, column) && getString(row, column).equals(other.getString(otherRow, column));
+    }
+
+    public boolean isBlank(int row, int column) {
+        return column >= columns.length || !columns[column].present.get(row);
+    }
+
+    public boolean isNumeric(int row, int column) {
+        return !isBlank(row, column) && columns[column].numeric.get(row);
+    }
+
+    public boolean isDate(int row, int column) {
+        return isNumeric(row, column) && columns[column].date.get(row);
+    }
+
+    public boolean isBoolean(int row, int column) {
+        return !isBlank(row, column) && columns[column].bool.get(row);
+    }
+
+    public boolean isString(int row, int column) {
+        return !isBlank(row, column) && !columns[column].numeric.get(row) && !columns[column].bool.get(row);
+    }
+
+    public double getNumber(int row, int column) {
+        return columns[column].numbers[row];
+    }
+
+    public boolean getBoolean(int row, int column) {
+        return columns[column].boolValues.get(row);
+    }
+
+    /**
+     * Возвращает значение ячейки в виде строки. Для строковых ячеек новая строка не создается.
+     *
+     * @param row    Номер строки.
+     * @param column Индекс колонки.
+     * @return Значение ячейки в виде строки; пустая строка для пустых ячеек.
+     */
+    @Override
+    public String getString(int row, int column) {
+        if (isBlank(row, column)) {
+            return "";
+        }
+        Column c = columns[column];
+        if (c.numeric.get(row)) {
+            return c.date.get(row) ? CellValues.formatDate(c.numbers[row]) : Double.toString(c.numbers[row]);
+        }
+        if (c.bool.get(row)) {
+            return Boolean.toString(c.boolValues.get(row));
+        }
+        return dictionary[c.codes[row]];
+    }
+
+    @Override
+    public void readCell(int row, int column, SheetRowHandler handler, int targetColumn) {
+        if (isBlank(row, column)) {
+            return;
+        }
+        Column c = columns[column];
+        if (c.numeric.get(row)) {
+            handler.numericCell(targetColumn, c.numbers[row], c.date.get(row));
+        } else if (c.bool.get(row)) {
+            handler.booleanCell(targetColumn, c.boolValues.get(row));
+        } else {
+            handler.stringCell(targetColumn, dictionary[c.codes[row]]);
+        }
+    }
+
+    @Override
+    public void writeCell(int row, int column, Cell targetCell) {
+        ExcelUtils.setCellValue(this, row, column, targetCell);
+    }
+
+    /**
+     * Данные одного столбца. Массивы значений создаются только при наличии ячеек соответствующего типа.
+     */
+    private static class Column {
+        final BitSet present = new BitSet();
+        final BitSet numeric = new BitSet();
+        final BitSet date = new BitSet();
+        final BitSet bool = new BitSet();
+        final BitSet boolValues = new BitSet();
+        double[] numbers;
+        int[] codes;
+
+        void setNumber(int row, double value, boolean isDate) {
+            if (numbers == null) {
+                numbers = new double[Math.max(16, row + 1)];
+            } else if (row >= numbers.length) {
+                numbers = Arrays.copyOf(numbers, Math.max(row + 1, numbers.length * 2));
+            }
+            numbers[row] = value;
+            present.set(row);
+            numeric.set(row);
+            date.set(row, isDate);
+        }
+
+        void setCode(int row, int code) {
+            if (codes == null) {
+                codes = new int[Math.max(16, row + 1)];
+            } else if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(row + 1, codes.length * 2));
+            }
+            codes[row] = code;
+            present.set(row);
+        }
+
+        void setBoolean(int row, boolean value) {
+            present.set(row);
+            bool.set(row);
+            boolValues.set(row, value);
+        }
+
+        void trim(int rowCount) {
+            if (numbers != null && numbers.length > rowCount) {
+                numbers = Arrays.copyOf(numbers, rowCount);
+            }
+            if (codes != null && codes.length > rowCount) {
+                codes = Arrays.copyOf(codes, rowCount);
+            }
+        }
+    }
+
+    /**
+     * Построитель таблицы. Первая строка листа считается заголовком; строки без значения
+     * в ключевой колонке пропускаются. Ячейки текущей строки накапливаются в буфере
+     * и переносятся в столбцы в {@link #endRow(int)}, там же вычисляется отпечаток строки.
+     */
+    public static class Builder implements SheetRowHandler {
+        private static final byte BLANK = 0;
+        private static final byte STRING = 1;
+        private static final byte NUMBER = 2;
+        private static final byte DATE = 3;
+        private static final byte BOOLEAN = 4;
+        private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME = 0x100000001b3L;
+
+        private final KeySpec keySpec;
+        private int headerRow;
+        private boolean keepBlankKeys;
+        private long[] rowHashes = new long[16];
+        private final List<Column> columns = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private String[] header = new String[0];
+        private int rowCount;
+
+        // Буфер текущей строки
+        private byte[] kinds = new byte[16];
+        private double[] numbers = new double[16];
+        private String[] strings = new String[16];
+        private int width;
+
+        private Builder(KeySpec keySpec) {
+            this.keySpec = keySpec;
+        }
+
+        /**
+         * Номер строки заголовка. Строки выше заголовка (например, название отчета) пропускаются.
+         *
+         * @param rowNum Номер строки заголовка (с нуля).
+         * @return Этот построитель.
+         */
+        public Builder headerRow(int rowNum) {
+            this.headerRow = rowNum;
+            return this;
+        }
+
+        /**
+         * Сохранять строки с пустым ключом (по умолчанию пропускаются).
+         *
+         * @return Этот построитель.
+         */
+        public Builder keepBlankKeys() {
+            this.keepBlankKeys = true;
+            return this;
+        }
+
+        /**
+         * Заголовок, прочитанный к текущему моменту.
+         *
+         * @return Значения строки заголовка.
+         */
+        public String[] header() {
+            return header;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(kinds, 0, width, BLANK);
+            Arrays.fill(strings, 0, width, null);
+            width = 0;
+        }
+
+        @Override
+        public void stringCell(int columnIndex, String value) {
+            ensureWidth(columnIndex);
+            kinds[columnIndex] = STRING;
+            strings[columnIndex] = value;
+        }
+
+        @Override
+        public void numericCell(int columnIndex, double value, boolean date) {
+            ensureWidth(columnIndex);
+            kinds[columnIndex] = date ? DATE : NUMBER;
+            numbers[columnIndex] = value;
+        }
+
+        @Override
+        public void booleanCell(int columnIndex, boolean value) {
+            ensureWidth(columnIndex);
+            kinds[columnIndex] = BOOLEAN;
+            numbers[columnIndex] = value ? 1 : 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum <= headerRow) {
+                if (rowNum == headerRow) {
+                    header = new String[width];
+                    for (int i = 0; i < width; i++) {
+                        header[i] = bufferedAsString(i);
+                    }
+                }
+                return;
+            }
+            if (!keepBlankKeys && isKeyBlank()) {
+                return;
+            }
+            while (columns.size() < width) {
+                columns.add(new Column());
+            }
+            int row = rowCount++;
+            if (row == rowHashes.length) {
+                rowHashes = Arrays.copyOf(rowHashes, row * 2);
+            }
+            rowHashes[row] = bufferedHash();
+            for (int i = 0; i < width; i++) {
+                Column column = columns.get(i);
+                switch (kinds[i]) {
+                    case STRING -> column.setCode(row, encode(strings[i]));
+                    case NUMBER -> column.setNumber(row, numbers[i], false);
+                    case DATE -> column.setNumber(row, numbers[i], true);
+                    case BOOLEAN -> column.setBoolean(row, numbers[i] != 0);
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        /**
+         * Завершает построение таблицы.
+         *
+         * @return Таблица с индексом по ключевой колонке.
+         */
+        public ColumnarTable build() {
+            return build(keySpec);
+        }
+
+        /**
+         * Завершает построение таблицы с индексом по другому ключу (например, по колонке, найденной в заголовке
+         * после чтения). Строки с пустым ключом отбираются по ключу построителя.
+         *
+         * @param keySpec Описание ключа индекса.
+         * @return Таблица с индексом по ключу.
+         */
+        public ColumnarTable build(KeySpec keySpec) {
+            int columnCount = Math.max(columns.size(), header.length);
+            while (columns.size() < columnCount) {
+                columns.add(new Column());
+            }
+            String[] fullHeader = Arrays.copyOf(header, columnCount);
+            Arrays.fill(fullHeader, header.length, columnCount, "");
+            for (Column column : columns) {
+                column.trim(rowCount);
+            }
+            return new ColumnarTable(fullHeader, columns.toArray(new Column[0]), dictionary.toArray(new String[0]), rowCount,
+                    Arrays.copyOf(rowHashes, rowCount), keySpec);
+        }
+
+        /**
+         * Все колонки ключа текущей строки пусты. Такие строки, как и раньше, в таблицу не попадают.
+         */
+        private boolean isKeyBlank() {
+            for (int i = 0; i < keySpec.columnCount(); i++) {
+                int column = keySpec.columnAt(i);
+                if (column < width && kinds[column] != BLANK) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        /**
+         * Отпечаток буферизованной строки: для каждой непустой ячейки номер столбца, тип и значение.
+         */
+        private long bufferedHash() {
+            long hash = FNV_OFFSET;
+            for (int i = 0; i < width; i++) {
+                switch (kinds[i]) {
+                    case STRING -> {
+                        hash = mix(mix(hash, i), strings[i].length());
+                        for (int k = 0; k < strings[i].length(); k++) {
+                            hash = (hash ^ strings[i].charAt(k)) * FNV_PRIME;
+                        }
+                    }
+                    case NUMBER, DATE -> hash = mix(mix(mix(hash, i), kinds[i] == DATE ? 2 : 1), Double.doubleToLongBits(numbers[i]));
+                    case BOOLEAN -> hash = mix(mix(hash, i), numbers[i] != 0 ? 4 : 3);
+                    default -> {
+                    }
+                }
+            }
+            return hash;
+        }
+
+        private static long mix(long hash, long value) {
+            long h = (hash ^ value) * 0x9e3779b97f4a7c15L;
+            return h ^ (h >>> 32);
+        }
+
+        private String bufferedAsString(int i) {
+            return switch (kinds[i]) {
+                case STRING -> strings[i];
+                case NUMBER -> Double.toString(numbers[i]);
+                case DATE -> CellValues.formatDate(numbers[i]);
+                case BOOLEAN -> Boolean.toString(numbers[i] != 0);
+                default -> "";
+            };
+        }
+
+        private void ensureWidth(int columnIndex) {
+            if (columnIndex >= kinds.length) {
+                int size = Math.max(columnIndex + 1, kinds.length * 2);
+                kinds = Arrays.copyOf(kinds, size);
+                numbers = Arrays.copyOf(numbers, size);
+                strings = Arrays.copyOf(strings, size);
+            }
+            width = Math.max(width, columnIndex + 1);
+        }
+    }
+}
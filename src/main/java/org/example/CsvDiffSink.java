@@ -0,0 +1,62 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Различия в CSV с разделителем {@code ;}. Поля с разделителем, кавычками или переводом строки заключаются
+ * в кавычки, кавычки внутри поля удваиваются.
+ */
+class CsvDiffSink extends ChannelDiffSink {
+
+    CsvDiffSink(Path file, ColumnarTable table1, ColumnarTable table2) throws IOException {
+        super(file, table1, table2);
+        write("kind;key;column;header;value1;value2\n");
+    }
+
+    @Override
+    protected void format(DiffEngine.Difference difference, StringBuilder record) {
+        String key = key(difference);
+        switch (difference.kind()) {
+            case MISSING -> appendLine(record, "removed", key, "", "", "", "");
+            case ADDED -> appendLine(record, "added", key, "", "", "", "");
+            case CHANGED -> {
+                for (int column : difference.columns()) {
+                    appendLine(record, "changed", key, Integer.toString(column), header(column),
+                            table1.getString(difference.row1(), column), table2.getString(difference.row2(), column));
+                }
+            }
+        }
+    }
+
+    private static void appendLine(StringBuilder record, String... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                record.append(';');
+            }
+            appendField(record, fields[i]);
+        }
+        record.append('\n');
+    }
+
+    private static void appendField(StringBuilder record, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ';' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            record.append(value);
+            return;
+        }
+        record.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                record.append('"');
+            }
+            record.append(c);
+        }
+        record.append('"');
+    }
+}
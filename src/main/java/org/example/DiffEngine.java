@@ -0,0 +1,280 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Параллельное построчное сравнение двух версий таблицы по ключу.
+ * <p>
+ * Ключи первой таблицы (в порядке первого появления) делятся на непрерывные отрезки по {@value #SHARD_KEYS}
+ * ключей - шарды, каждый шард сравнивается отдельной задачей {@link ForkJoinPool}. Строки одного ключа
+ * сопоставляются по порядку; у сопоставленных строк сначала сравниваются отпечатки
+ * {@link ColumnarTable#rowHash(int)}, и только при различии - ячейки. Ключи, которые есть только во второй
+ * таблице, так же по шардам ищутся вторым проходом.
+ * Каждая задача пишет различия в собственный буфер, поэтому синхронизация не нужна, а буферы
+ * объединяются в порядке шардов: результат совпадает с последовательным обходом и не зависит от числа потоков.
+ * <p>
+ * При выводе в {@link DiffSink} шарды выполняются окнами по несколько шардов на поток: различия окна
+ * передаются приемнику и освобождаются до запуска следующего окна. Размер шарда не зависит от размера таблиц,
+ * поэтому окно охватывает ограниченное число ключей и память под различия не растет с их общим числом.
+ */
+public class DiffEngine {
+    private static final Logger logger = LoggerFactory.getLogger(DiffEngine.class);
+    // Число ключей в шарде: меньшие шарды не окупают создание задачи, а большие увеличили бы окно вывода
+    private static final int SHARD_KEYS = 1024;
+    // Число шардов окна на поток пула при выводе в приемник
+    private static final int WINDOW_SHARDS_PER_THREAD = 4;
+
+    /**
+     * Вид различия.
+     */
+    public enum Kind {
+        /** Строка первой таблицы без пары во второй. */
+        MISSING,
+        /** Строка второй таблицы без пары в первой. */
+        ADDED,
+        /** Сопоставленные строки с различающимися ячейками. */
+        CHANGED
+    }
+
+    /**
+     * Различие.
+     *
+     * @param kind    Вид различия.
+     * @param keyId   Номер ключа в индексе первой таблицы (для {@link Kind#ADDED} - второй).
+     * @param row1    Строка первой таблицы или -1.
+     * @param row2    Строка второй таблицы или -1.
+     * @param columns Индексы различающихся столбцов для {@link Kind#CHANGED}, иначе пустой массив.
+     */
+    public record Difference(Kind kind, int keyId, int row1, int row2, int[] columns) {
+    }
+
+    /**
+     * Результат сравнения: различия в порядке ключей первой таблицы, затем добавленные ключи второй.
+     *
+     * @param differences Различия.
+     * @param missing     Число строк первой таблицы без пары.
+     * @param added       Число строк второй таблицы без пары.
+     * @param changed     Число измененных строк.
+     * @param compared    Число пар, сравненных по ячейкам (отпечатки различались).
+     */
+    public record DiffResult(List<Difference> differences, int missing, int added, int changed, int compared) {
+    }
+
+    /**
+     * Сравнивает таблицы в общем пуле {@link ForkJoinPool#commonPool()}.
+     *
+     * @param table1 Первая (исходная) таблица.
+     * @param table2 Вторая (новая) таблица.
+     * @return Различия.
+     */
+    public static DiffResult compare(ColumnarTable table1, ColumnarTable table2) {
+        return compare(table1, table2, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Сравнивает таблицы в указанном пуле. Столбцы сравниваются по индексу.
+     *
+     * @param table1 Первая (исходная) таблица.
+     * @param table2 Вторая (новая) таблица.
+     * @param pool   Пул для выполнения задач.
+     * @return Различия.
+     */
+    public static DiffResult compare(ColumnarTable table1, ColumnarTable table2, ForkJoinPool pool) {
+        List<Difference> differences = new ArrayList<>();
+        try {
+            DiffResult counts = execute(table1, table2, pool, Integer.MAX_VALUE, shard -> differences.addAll(shard.differences));
+            return new DiffResult(Collections.unmodifiableList(differences), counts.missing(), counts.added(), counts.changed(),
+                    counts.compared());
+        } catch (IOException e) {
+            // Сбор в список не выполняет ввода-вывода
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Сравнивает таблицы и передает различия приемнику в том же порядке, что и {@link #compare(ColumnarTable, ColumnarTable)},
+     * по мере готовности окон шардов. Приемник не закрывается.
+     *
+     * @param table1 Первая (исходная) таблица.
+     * @param table2 Вторая (новая) таблица.
+     * @param pool   Пул для выполнения задач.
+     * @param sink   Приемник различий.
+     * @return Счетчики различий; список различий пуст.
+     * @throws IOException Если приемник не смог записать различие.
+     */
+    public static DiffResult compare(ColumnarTable table1, ColumnarTable table2, ForkJoinPool pool, DiffSink sink) throws IOException {
+        return execute(table1, table2, pool, pool.getParallelism() * WINDOW_SHARDS_PER_THREAD, shard -> {
+            for (Difference difference : shard.differences) {
+                sink.accept(difference);
+            }
+        });
+    }
+
+    /**
+     * Выполняет шарды окнами по {@code window} шардов и передает готовые шарды обработчику в порядке номеров.
+     */
+    private static DiffResult execute(ColumnarTable table1, ColumnarTable table2, ForkJoinPool pool, int window,
+                                      ShardHandler handler) throws IOException {
+        long start = System.nanoTime();
+        int keys1 = table1.keyIndex().keyCount();
+        int keys2 = table2.keyIndex().keyCount();
+        int shards1 = (keys1 + SHARD_KEYS - 1) / SHARD_KEYS;
+        int shards2 = (keys2 + SHARD_KEYS - 1) / SHARD_KEYS;
+
+        Shard[] shards = new Shard[shards1 + shards2];
+        int missing = 0;
+        int added = 0;
+        int changed = 0;
+        int compared = 0;
+        for (int from = 0; from < shards.length; from += window) {
+            int to = (int) Math.min((long) from + window, shards.length);
+            pool.invoke(new ShardTask(table1, table2, shards, shards1, from, to));
+            for (int i = from; i < to; i++) {
+                Shard shard = shards[i];
+                shards[i] = null;
+                handler.accept(shard);
+                missing += shard.missing;
+                added += shard.added;
+                changed += shard.changed;
+                compared += shard.compared;
+            }
+        }
+        logger.info("Сравнение выполнено за {} мс ({} шардов): отсутствует {}, добавлено {}, изменено {}, сравнено по ячейкам {}",
+                (System.nanoTime() - start) / 1_000_000, shards.length, missing, added, changed, compared);
+        return new DiffResult(List.of(), missing, added, changed, compared);
+    }
+
+    /**
+     * Обработчик готового шарда.
+     */
+    @FunctionalInterface
+    private interface ShardHandler {
+        void accept(Shard shard) throws IOException;
+    }
+
+    /**
+     * Различия одного шарда.
+     */
+    private static class Shard {
+        final List<Difference> differences = new ArrayList<>();
+        int missing;
+        int added;
+        int changed;
+        int compared;
+
+        void add(Difference difference) {
+            differences.add(difference);
+            switch (difference.kind()) {
+                case MISSING -> missing++;
+                case ADDED -> added++;
+                case CHANGED -> changed++;
+            }
+        }
+    }
+
+    /**
+     * Обрабатывает диапазон шардов, рекурсивно деля его пополам. Шарды с номером меньше {@code shards1} -
+     * отрезки ключей первой таблицы, остальные - отрезки ключей второй.
+     */
+    private static class ShardTask extends RecursiveAction {
+        private static final int[] NO_COLUMNS = new int[0];
+
+        private final ColumnarTable table1;
+        private final ColumnarTable table2;
+        private final Shard[] shards;
+        private final int shards1;
+        private final int from;
+        private final int to;
+
+        ShardTask(ColumnarTable table1, ColumnarTable table2, Shard[] shards, int shards1, int from, int to) {
+            this.table1 = table1;
+            this.table2 = table2;
+            this.shards = shards;
+            this.shards1 = shards1;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ShardTask(table1, table2, shards, shards1, from, middle),
+                        new ShardTask(table1, table2, shards, shards1, middle, to));
+                return;
+            }
+            Shard shard = new Shard();
+            if (from < shards1) {
+                compareKeys(shard, from * SHARD_KEYS, Math.min((from + 1) * SHARD_KEYS, table1.keyIndex().keyCount()));
+            } else {
+                int first = (from - shards1) * SHARD_KEYS;
+                findAddedKeys(shard, first, Math.min(first + SHARD_KEYS, table2.keyIndex().keyCount()));
+            }
+            shards[from] = shard;
+        }
+
+        /**
+         * Ключи первой таблицы: строки без пары, измененные строки и лишние строки второй таблицы с тем же ключом.
+         */
+        private void compareKeys(Shard shard, int fromKey, int toKey) {
+            KeyIndex index1 = table1.keyIndex();
+            KeyIndex index2 = table2.keyIndex();
+            for (int keyId = fromKey; keyId < toKey; keyId++) {
+                int keyId2 = index2.find(index1, keyId);
+                int row2 = keyId2 != -1 ? index2.firstRow(keyId2) : -1;
+                for (int row1 = index1.firstRow(keyId); row1 != -1; row1 = index1.nextRow(row1)) {
+                    if (row2 == -1) {
+                        shard.add(new Difference(Kind.MISSING, keyId, row1, -1, NO_COLUMNS));
+                        continue;
+                    }
+                    if (table1.rowHash(row1) != table2.rowHash(row2)) {
+                        shard.compared++;
+                        int[] columns = differentColumns(row1, row2);
+                        if (columns.length > 0) {
+                            shard.add(new Difference(Kind.CHANGED, keyId, row1, row2, columns));
+                        }
+                    }
+                    row2 = index2.nextRow(row2);
+                }
+                for (; row2 != -1; row2 = index2.nextRow(row2)) {
+                    shard.add(new Difference(Kind.ADDED, keyId2, -1, row2, NO_COLUMNS));
+                }
+            }
+        }
+
+        /**
+         * Ключи второй таблицы, которых нет в первой.
+         */
+        private void findAddedKeys(Shard shard, int fromKey, int toKey) {
+            KeyIndex index1 = table1.keyIndex();
+            KeyIndex index2 = table2.keyIndex();
+            for (int keyId2 = fromKey; keyId2 < toKey; keyId2++) {
+                if (index1.find(index2, keyId2) != -1) {
+                    continue;
+                }
+                for (int row2 = index2.firstRow(keyId2); row2 != -1; row2 = index2.nextRow(row2)) {
+                    shard.add(new Difference(Kind.ADDED, keyId2, -1, row2, NO_COLUMNS));
+                }
+            }
+        }
+
+        private int[] differentColumns(int row1, int row2) {
+            int columnCount = Math.max(table1.columnCount(), table2.columnCount());
+            IntList columns = new IntList(4);
+            for (int column = 0; column < columnCount; column++) {
+                if (!table1.sameValue(row1, table2, row2, column)) {
+                    columns.add(column);
+                }
+            }
+            return columns.toArray();
+        }
+    }
+}
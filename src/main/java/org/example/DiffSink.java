@@ -0,0 +1,48 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Приемник различий, которые {@link DiffEngine} передает по мере готовности. Приемник сразу записывает
+ * различие и не накапливает их, поэтому объем памяти не зависит от числа различий.
+ */
+public interface DiffSink extends Closeable {
+
+    /**
+     * Записывает различие.
+     *
+     * @param difference Различие; номера строк и ключей относятся к таблицам, для которых создан приемник.
+     * @throws IOException Если различие не удалось записать.
+     */
+    void accept(DiffEngine.Difference difference) throws IOException;
+
+    /**
+     * CSV с разделителем {@code ;}: строка заголовка {@code kind;key;column;header;value1;value2}, одна строка на
+     * удаленную или добавленную строку таблицы и одна строка на каждый измененный столбец.
+     *
+     * @param file   Файл результата (перезаписывается).
+     * @param table1 Первая таблица сравнения.
+     * @param table2 Вторая таблица сравнения.
+     * @return Приемник.
+     * @throws IOException Если файл не удалось создать.
+     */
+    static DiffSink csv(Path file, ColumnarTable table1, ColumnarTable table2) throws IOException {
+        return new CsvDiffSink(file, table1, table2);
+    }
+
+    /**
+     * JSON Lines: один объект на различие, измененные столбцы - в массиве {@code changes}. Числа и логические
+     * значения записываются без кавычек, пустые ячейки - как {@code null}.
+     *
+     * @param file   Файл результата (перезаписывается).
+     * @param table1 Первая таблица сравнения.
+     * @param table2 Вторая таблица сравнения.
+     * @return Приемник.
+     * @throws IOException Если файл не удалось создать.
+     */
+    static DiffSink jsonLines(Path file, ColumnarTable table1, ColumnarTable table2) throws IOException {
+        return new JsonLinesDiffSink(file, table1, table2);
+    }
+}
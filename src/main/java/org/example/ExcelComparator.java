@@ -2,21 +2,26 @@ package org.example;
 
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class ExcelComparator {
 
     private static final String PARTIAL_HEADER = "Код позиции";
     private static final Logger logger = LoggerFactory.getLogger(ExcelComparator.class);
-    private static final Map<String, CellStyle> styleMap = new HashMap<>();
+    // Номер строки заголовка: первая строка листа - название выгрузки
+    private static final int HEADER_ROW = 1;
+    // Формат результата: xlsx (листы с сообщениями), csv или jsonl (потоковая запись различий для обработки программами)
+    private static final String OUTPUT_FORMAT = System.getProperty("datamerge.compareFormat", "xlsx");
 
     public static void main(String[] args) {
         String file1 = "Выгрузка_МТР_ГСП_Ремонт__Подрядчик__24.07.2024.xls";
@@ -31,35 +36,29 @@ public class ExcelComparator {
     }
 
     private static void compareExcelFiles(String file1, String file2, String outputFile) throws IOException {
-        try (Workbook workbook1 = openWorkbook(file1);
-             Workbook workbook2 = openWorkbook(file2);
-             Workbook outputWorkbook = new XSSFWorkbook()) {
-
-            Sheet sheet1 = workbook1.getSheetAt(0);
-            Sheet sheet2 = workbook2.getSheetAt(0);
+        ColumnarTable table1 = loadTable(file1);
+        ColumnarTable table2 = loadTable(file2);
+        if (!OUTPUT_FORMAT.equals("xlsx")) {
+            compareToFile(table1, table2, outputFile);
+            return;
+        }
 
+        try (Workbook outputWorkbook = new XSSFWorkbook()) {
             // Создание листов для результатов
             Sheet headerSheet = outputWorkbook.createSheet("Заголовки");
             Sheet missingRowsSheet = outputWorkbook.createSheet("Отсутствующие строки");
+            Sheet addedRowsSheet = outputWorkbook.createSheet("Добавленные строки");
             Sheet changedRowsSheet = outputWorkbook.createSheet("Измененные строки");
+            StyleRegistry styles = new StyleRegistry(outputWorkbook);
 
             // Сравнение заголовков
-            Row header1 = sheet1.getRow(1);
-            Row header2 = sheet2.getRow(1);
-            boolean headersChanged = !compareHeaders(header1, header2, headerSheet);
+            boolean headersChanged = !compareHeaders(table1.header(), table2.header(), headerSheet, styles);
             if (headersChanged) {
-                createOutputRow(headerSheet, 1, "Заголовки изменились");
+                createOutputRow(headerSheet, 1, "Заголовки изменились", styles);
             }
 
-            // Получение индексов колонок
-            int index1 = getColumnIndexByPartialHeader(header1, PARTIAL_HEADER);
-            int index2 = getColumnIndexByPartialHeader(header2, PARTIAL_HEADER);
-            if (index1 == -1 || index2 == -1) {
-                throw new RuntimeException("Заголовок, содержащий '" + PARTIAL_HEADER + "', не найден в одном из файлов.");
-            }
-
-            // Сравнение строк
-            compareRows(sheet1, sheet2, missingRowsSheet, changedRowsSheet, index1, index2);
+            // Сравнение строк в обе стороны по одной загрузке каждого файла
+            compareTables(table1, table2, missingRowsSheet, addedRowsSheet, changedRowsSheet, styles);
 
             try (FileOutputStream fileOut = new FileOutputStream(outputFile)) {
                 outputWorkbook.write(fileOut);
@@ -68,74 +67,86 @@ public class ExcelComparator {
         }
     }
 
-    private static Workbook openWorkbook(String filePath) throws IOException {
-        if (filePath.endsWith(".xlsx")) {
-            return new XSSFWorkbook(new FileInputStream(filePath));
-        } else if (filePath.endsWith(".xls")) {
-            return new HSSFWorkbook(new FileInputStream(filePath));
-        } else {
-            throw new IllegalArgumentException("Неподдерживаемый формат файла: " + filePath);
-        }
+    /**
+     * Сравнивает таблицы с потоковой записью различий в CSV или JSON Lines. Имя файла результата получается
+     * заменой расширения {@code outputFile} на формат.
+     */
+    private static void compareToFile(ColumnarTable table1, ColumnarTable table2, String outputFile) throws IOException {
+        if (!Arrays.equals(table1.header(), table2.header())) {
+            logger.warn("Заголовки файлов различаются, столбцы сравниваются по индексу.");
+        }
+        Path path = Paths.get(outputFile.replaceFirst("\\.[^.]*$", "") + "." + OUTPUT_FORMAT);
+        try (DiffSink sink = switch (OUTPUT_FORMAT) {
+            case "csv" -> DiffSink.csv(path, table1, table2);
+            case "jsonl" -> DiffSink.jsonLines(path, table1, table2);
+            default -> throw new IllegalArgumentException("Неподдерживаемый формат результата: " + OUTPUT_FORMAT);
+        }) {
+            DiffEngine.compare(table1, table2, ForkJoinPool.commonPool(), sink);
+        }
+        logger.info("Результаты сравнения сохранены в файл: " + path);
     }
 
-    private static void compareRows(Sheet sheet1, Sheet sheet2, Sheet missingRowsSheet, Sheet changedRowsSheet, int index1, int index2) {
+    /**
+     * Загружает первый лист файла в колоночную таблицу с индексом по колонке, заголовок которой содержит
+     * {@value #PARTIAL_HEADER}. Заголовок находится во второй строке листа, строки с пустым ключом сохраняются.
+     */
+    private static ColumnarTable loadTable(String filePath) throws IOException {
+        ColumnarTable.Builder builder = ColumnarTable.builder(KeySpec.column(0)).headerRow(HEADER_ROW).keepBlankKeys();
+        TableCache.wrap(filePath, true).read(builder);
+        int keyColumn = getColumnIndexByPartialHeader(builder.header(), PARTIAL_HEADER);
+        if (keyColumn == -1) {
+            throw new RuntimeException("Заголовок, содержащий '" + PARTIAL_HEADER + "', не найден в файле " + filePath + ".");
+        }
+        ColumnarTable table = builder.build(KeySpec.column(keyColumn));
+        logger.info("Файл {} загружен ({} строк).", filePath, table.rowCount());
+        return table;
+    }
+
+    /**
+     * Сравнивает строки таблиц через {@link DiffEngine} и за один проход записывает на листы результата
+     * строки, удаленные из первого файла, добавленные во второй и измененные.
+     *
+     * @return Результат сравнения.
+     */
+    static DiffEngine.DiffResult compareTables(ColumnarTable table1, ColumnarTable table2, Sheet missingRowsSheet, Sheet addedRowsSheet,
+                                               Sheet changedRowsSheet, StyleRegistry styles) {
+        DiffEngine.DiffResult result = DiffEngine.compare(table1, table2);
+        CellStyle redStyle = styles.bold(IndexedColors.RED);
         int missingRowNum = 1;
+        int addedRowNum = 1;
         int changedRowNum = 1;
 
-        // Создание отображений значений строк
-        Map<String, Row> rowMap1 = createValueToRowMap(sheet1, index1);
-        Map<String, Row> rowMap2 = createValueToRowMap(sheet2, index2);
-
-        // Поиск строк, отсутствующих во втором файле
-        for (Map.Entry<String, Row> entry : rowMap1.entrySet()) {
-            String value = entry.getKey();
-            Row row1 = entry.getValue();
-            Row matchingRow = rowMap2.get(value);
-
-            if (matchingRow == null) {
-                createOutputRow(missingRowsSheet, missingRowNum++, "Строка с '" + PARTIAL_HEADER + "' = " + value + " отсутствует во втором файле.");
-            } else if (!compareRows(row1, matchingRow)) {
-                createOutputRow(changedRowsSheet, changedRowNum++, "Строка с '" + PARTIAL_HEADER + "' = " + value + " изменилась:");
-                changedRowNum = printRowDifferences(row1, matchingRow, changedRowsSheet, changedRowNum);
+        for (DiffEngine.Difference difference : result.differences()) {
+            switch (difference.kind()) {
+                case MISSING -> createOutputRow(missingRowsSheet, missingRowNum++, "Строка с '" + PARTIAL_HEADER + "' = "
+                        + table1.keyIndex().key(difference.keyId()) + " отсутствует во втором файле.", styles);
+                case ADDED -> createOutputRow(addedRowsSheet, addedRowNum++, "Строка с '" + PARTIAL_HEADER + "' = "
+                        + table2.keyIndex().key(difference.keyId()) + " отсутствует в первом файле.", styles);
+                case CHANGED -> {
+                    createOutputRow(changedRowsSheet, changedRowNum++, "Строка с '" + PARTIAL_HEADER + "' = "
+                            + table1.keyIndex().key(difference.keyId()) + " изменилась:", styles);
+                    for (int column : difference.columns()) {
+                        Cell outputCell = changedRowsSheet.createRow(changedRowNum++).createCell(0);
+                        outputCell.setCellValue("Различие в столбце " + column + ": " + table1.getString(difference.row1(), column)
+                                + " vs " + table2.getString(difference.row2(), column));
+                        outputCell.setCellStyle(redStyle);
+                    }
+                }
             }
         }
+        return result;
     }
 
-    private static Map<String, Row> createValueToRowMap(Sheet sheet, int columnIndex) {
-        Map<String, Row> valueToRowMap = new HashMap<>();
-        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
-
-            String value = getCellValue(row.getCell(columnIndex));
-            valueToRowMap.put(value, row);
-        }
-        return valueToRowMap;
-    }
-
-    private static void createOutputRow(Sheet sheet, int rowNum, String message) {
+    private static void createOutputRow(Sheet sheet, int rowNum, String message, StyleRegistry styles) {
         Row row = sheet.createRow(rowNum);
         Cell cell = row.createCell(0);
         cell.setCellValue(message);
-
-        CellStyle style = getCellStyle(sheet.getWorkbook(), "Bold");
-        cell.setCellStyle(style);
-    }
-
-    private static CellStyle getCellStyle(Workbook workbook, String styleKey) {
-        if (!styleMap.containsKey(styleKey)) {
-            CellStyle style = workbook.createCellStyle();
-            Font font = workbook.createFont();
-            font.setBold(true);
-            style.setFont(font);
-            styleMap.put(styleKey, style);
-        }
-        return styleMap.get(styleKey);
+        cell.setCellStyle(styles.bold());
     }
 
-    private static boolean compareHeaders(Row header1, Row header2, Sheet headerSheet) {
-        if (header1 == null || header2 == null) {
-            createOutputRow(headerSheet, 1, "Один из заголовков отсутствует.");
+    private static boolean compareHeaders(String[] header1, String[] header2, Sheet headerSheet, StyleRegistry styles) {
+        if (header1.length == 0 || header2.length == 0) {
+            createOutputRow(headerSheet, 1, "Один из заголовков отсутствует.", styles);
             return false;
         }
 
@@ -148,7 +159,7 @@ public class ExcelComparator {
             Integer columnIndex2 = headerMap2.get(header1Value);
 
             if (columnIndex2 == null) {
-                createOutputRow(headerSheet, ++rowNum, "Заголовок '" + header1Value + "' из первого файла отсутствует во втором.");
+                createOutputRow(headerSheet, ++rowNum, "Заголовок '" + header1Value + "' из первого файла отсутствует во втором.", styles);
             } else {
                 headerMap2.remove(header1Value);
             }
@@ -156,108 +167,30 @@ public class ExcelComparator {
 
         for (Map.Entry<String, Integer> entry : headerMap2.entrySet()) {
             String header2Value = entry.getKey();
-            createOutputRow(headerSheet, ++rowNum, "Заголовок '" + header2Value + "' из второго файла отсутствует в первом.");
+            createOutputRow(headerSheet, ++rowNum, "Заголовок '" + header2Value + "' из второго файла отсутствует в первом.", styles);
         }
 
         if (rowNum == 0) {
-            createOutputRow(headerSheet, ++rowNum, "Заголовки совпадают.");
+            createOutputRow(headerSheet, ++rowNum, "Заголовки совпадают.", styles);
         }
 
         return rowNum > 1; // Return true if headers changed
     }
 
-    private static Map<String, Integer> createHeaderMap(Row headerRow) {
+    private static Map<String, Integer> createHeaderMap(String[] header) {
         Map<String, Integer> headerMap = new HashMap<>();
-        if (headerRow == null) return headerMap;
-
-        for (Cell cell : headerRow) {
-            if (cell != null && cell.getCellType() == CellType.STRING) {
-                headerMap.put(cell.getStringCellValue(), cell.getColumnIndex());
+        for (int i = 0; i < header.length; i++) {
+            if (header[i] != null && !header[i].isEmpty()) {
+                headerMap.put(header[i], i);
             }
         }
         return headerMap;
     }
 
-    private static boolean compareRows(Row row1, Row row2) {
-        if (row1 == null || row2 == null) return row1 == row2;
-
-        int maxCells = Math.max(row1.getLastCellNum(), row2.getLastCellNum());
-        for (int i = 0; i < maxCells; i++) {
-            Cell cell1 = row1.getCell(i);
-            Cell cell2 = row2.getCell(i);
-
-            if (!compareCells(cell1, cell2)) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private static boolean compareCells(Cell cell1, Cell cell2) {
-        if (cell1 == null && cell2 == null) return true;
-        if (cell1 == null || cell2 == null) return false;
-
-        if (cell1.getCellType() != cell2.getCellType()) return false;
-
-        switch (cell1.getCellType()) {
-            case STRING:
-                return cell1.getStringCellValue().equals(cell2.getStringCellValue());
-            case NUMERIC:
-                return cell1.getNumericCellValue() == cell2.getNumericCellValue();
-            case BOOLEAN:
-                return cell1.getBooleanCellValue() == cell2.getBooleanCellValue();
-            case FORMULA:
-                return cell1.getCellFormula().equals(cell2.getCellFormula());
-            default:
-                return false;
-        }
-    }
-
-    private static int printRowDifferences(Row row1, Row row2, Sheet sheet, int startRow) {
-        // Создаем стили для вывода различий
-        CellStyle redStyle = getCellStyle(sheet.getWorkbook(), "Red");
-
-        for (int i = 0; i < Math.max(row1.getLastCellNum(), row2.getLastCellNum()); i++) {
-            Cell cell1 = row1.getCell(i);
-            Cell cell2 = row2.getCell(i);
-
-            // Получаем значения ячеек
-            String value1 = getCellValue(cell1);
-            String value2 = getCellValue(cell2);
-
-            // Сравниваем значения
-            if (!value1.equals(value2)) {
-                Row outputRow = sheet.createRow(startRow++);
-                Cell outputCell = outputRow.createCell(0);
-                outputCell.setCellValue("Различие в столбце " + i + ": " + value1 + " vs " + value2);
-                outputCell.setCellStyle(redStyle);
-            }
-        }
-        return startRow;
-    }
-
-
-    private static String getCellValue(Cell cell) {
-        if (cell == null) return "";
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                return String.valueOf(cell.getNumericCellValue());
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                return cell.getCellFormula();
-            default:
-                return "";
-        }
-    }
-
-    private static int getColumnIndexByPartialHeader(Row headerRow, String partialHeader) {
-        if (headerRow == null) return -1;
-        for (Cell cell : headerRow) {
-            if (cell != null && cell.getCellType() == CellType.STRING && cell.getStringCellValue().contains(partialHeader)) {
-                return cell.getColumnIndex();
+    private static int getColumnIndexByPartialHeader(String[] header, String partialHeader) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i] != null && header[i].contains(partialHeader)) {
+                return i;
             }
         }
         return -1;
@@ -1,16 +1,20 @@
 package org.example;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import static org.example.GroupRowsByPositionAndCount.groupRowsAndCountInSameFile;
 import static org.example.PyConnector.StartPyConnector;
 import static org.example.XlsToXlsxConverter.convertXlsToXlsx;
 
@@ -21,9 +25,36 @@ public class ExcelMerger {
     private static final Logger logger = LoggerFactory.getLogger(ExcelMerger.class);
     private static final String FILE1_PATH = "Выгрузка_МТР_ГСП_Ремонт__Подрядчик__24.07.2024.xlsx";
     private static final String FILE2_PATH = "Выгрузка_МТР_ГСП_Ремонт__Агент__24.07.2024.xlsx";
-    private static final int KEY_COLUMN_FILE1 = 3;
-    private static final int KEY_COLUMN_FILE2 = 7;
-    private static final int DEFAULT_COLUMN_WIDTH = 20; // Ширина строки
+    // Ключевые колонки через запятую (составной ключ), значения обрезаются и числа нормализуются
+    private static final KeySpec KEY_FILE1 = KeySpec.parse(System.getProperty("datamerge.keyColumns1", "3"),
+            Boolean.getBoolean("datamerge.keyIgnoreCase"));
+    private static final KeySpec KEY_FILE2 = KeySpec.parse(System.getProperty("datamerge.keyColumns2", "7"),
+            Boolean.getBoolean("datamerge.keyIgnoreCase"));
+    private static final String OUTPUT_PATH = "MergedData.xlsx";
+    // Листы инкрементального режима со строками, ключи которых добавлены или изменены с предыдущего запуска
+    private static final String CHANGES_SHEET_1 = "ChangedRowsFile1";
+    private static final String CHANGES_SHEET_2 = "ChangedRowsFile2";
+    // Листы инкрементального режима с ключами, пропавшими с предыдущего запуска
+    private static final String DELETED_SHEET_1 = "DeletedKeysFile1";
+    private static final String DELETED_SHEET_2 = "DeletedKeysFile2";
+    // Потоковое чтение входных файлов через SAX без построения объектной модели XSSF
+    private static final boolean STREAMING_READ = Boolean.parseBoolean(System.getProperty("datamerge.streamingRead", "true"));
+    // Потоковая запись результата через SXSSF: в памяти держится только окно из ROW_WINDOW строк на лист
+    private static final boolean STREAMING_WRITE = Boolean.parseBoolean(System.getProperty("datamerge.streamingWrite", "false"));
+    private static final int ROW_WINDOW = Integer.getInteger("datamerge.rowWindow", 1000);
+    // Файлы XLS читаются напрямую; при включенном экспорте рядом дополнительно сохраняется копия XLSX
+    private static final boolean EXPORT_XLSX = Boolean.parseBoolean(System.getProperty("datamerge.exportXlsx", "false"));
+    // Потоковая конвертация XLS при экспорте: записи BIFF читаются по одной, результат пишется через SXSSF
+    private static final boolean STREAMING_CONVERT = Boolean.parseBoolean(System.getProperty("datamerge.streamingConvert", "true"));
+    // Агрегаты сводки по группам, например "count,sum:Количество": вместо листов со строками групп
+    // записывается строка на группу. По умолчанию (пусто) - подробная группировка
+    private static final String GROUP_SUMMARY = System.getProperty("datamerge.groupSummary", "");
+    // Режим соединения для повторяющихся ключей: INNER, LEFT, FULL_OUTER или POSITIONAL
+    private static final JoinMode JOIN_MODE = JoinMode.valueOf(System.getProperty("datamerge.joinMode", "FULL_OUTER"));
+    // Режим отслеживания изменений: отпечатки входных файлов и настроек сохраняются рядом с результатом. Если входы
+    // и настройки не изменились, объединение пропускается; иначе результат строится заново целиком, а затронутые
+    // строки и удаленные ключи выводятся на отдельные листы
+    private static final boolean INCREMENTAL = Boolean.getBoolean("datamerge.incremental");
 
     /**
      * Основной метод для объединения данных из двух Excel файлов.
@@ -34,124 +65,235 @@ public class ExcelMerger {
     public static void main(String[] args) throws IOException {
         try {
             logger.info("Начало процесса объединения данных");
+            mergeFiles(FILE1_PATH, FILE2_PATH, OUTPUT_PATH);
+            logger.info("Объединенные данные сохранены в файл {}", OUTPUT_PATH);
 
-            // Проверка и конвертация файлов, если они в формате XLS
-            String convertedFile1Path = convertIfNecessary(FILE1_PATH);
-            String convertedFile2Path = convertIfNecessary(FILE2_PATH);
-
-            // Открытие рабочих книг для файлов
-            Workbook workbook1 = new XSSFWorkbook(new FileInputStream(convertedFile1Path));
-            Workbook workbook2 = new XSSFWorkbook(new FileInputStream(convertedFile2Path));
-
-            logger.info("Рабочие книги успешно открыты");
-
-            // Извлечение данных из файлов в виде карты ключ-строка
-            Map<String, Row> dataFile1 = ExcelUtils.extractData(workbook1, KEY_COLUMN_FILE1);
-            Map<String, Row> dataFile2 = ExcelUtils.extractData(workbook2, KEY_COLUMN_FILE2);
-
-            logger.info("Данные из файлов успешно извлечены");
-
-            // Создание новой рабочей книги для объединенных данных
-            Workbook newWorkbook = new XSSFWorkbook();
-            Sheet mergedSheet = newWorkbook.createSheet("MergedData");
-
-            // Создание заголовков с указанием источника для объединенного листа
-            ExcelUtils.createHeaderRow(mergedSheet, workbook1, workbook2);
+        } catch (IOException e) {
+            logger.error("Ошибка при обработке Excel файлов", e);
+        }
 
-            // Применение стилей столбцов в зависимости от источника данных
-            ExcelUtils.applyColumnStyles(mergedSheet, 0, dataFile1.get(dataFile1.keySet().iterator().next()).getLastCellNum(), "file1");
-            ExcelUtils.applyColumnStyles(mergedSheet, dataFile1.get(dataFile1.keySet().iterator().next()).getLastCellNum(), dataFile2.get(dataFile2.keySet().iterator().next()).getLastCellNum(), "file2");
+        //StartPyConnector(new String[]{});
+    }
 
-            // Установка ширины столбцов
-            for (int i = 0; i < mergedSheet.getRow(0).getLastCellNum(); i++) {
-                mergedSheet.setColumnWidth(i, DEFAULT_COLUMN_WIDTH * 256); // 256 символов на единицу ширины
+    /**
+     * Объединяет пару файлов и сохраняет результат. Используется как для одиночного запуска, так и в пакетном
+     * режиме {@link BatchMerger}.
+     * <p>
+     * В режиме {@code datamerge.incremental} изменения только обнаруживаются, а не пересчитываются по частям:
+     * при совпадении размера и времени изменения входов и отпечатка настроек с предыдущим запуском результат
+     * не строится, при совпадении отпечатков строк - не перезаписывается. Любое изменение данных или настроек
+     * ведет к полному объединению; добавленные и измененные строки и удаленные ключи дополнительно выводятся
+     * на листы {@value #CHANGES_SHEET_1}, {@value #CHANGES_SHEET_2}, {@value #DELETED_SHEET_1} и {@value #DELETED_SHEET_2}.
+     *
+     * @param file1Path  путь к файлу подрядчика
+     * @param file2Path  путь к файлу агента
+     * @param outputPath путь к файлу результата
+     * @return количество строк и время этапов
+     * @throws IOException если возникают ошибки ввода-вывода при обработке файлов
+     */
+    static MergeResult mergeFiles(String file1Path, String file2Path, String outputPath) throws IOException {
+        // Правила загружаются до чтения данных, чтобы ошибка в файле правил не стоила загрузки входов
+        ColumnPairingRules rules = ColumnPairingRules.configured();
+        Path statePath = Paths.get(outputPath + ".state");
+        IncrementalState previous = null;
+        IncrementalState.FileStamp stamp1 = null;
+        IncrementalState.FileStamp stamp2 = null;
+        long settings = 0;
+        if (INCREMENTAL) {
+            // Отметки снимаются до чтения, чтобы файл, измененный во время запуска, был пересчитан в следующий раз
+            stamp1 = IncrementalState.FileStamp.of(Paths.get(file1Path));
+            stamp2 = IncrementalState.FileStamp.of(Paths.get(file2Path));
+            settings = IncrementalState.settingsFingerprint(describeSettings(rules));
+            previous = IncrementalState.load(statePath, settings);
+            if (previous != null && previous.sameInputs(stamp1, stamp2) && Files.exists(Paths.get(outputPath))) {
+                logger.info("Входные файлы не изменились с предыдущего запуска, результат {} актуален", outputPath);
+                return previous.result();
             }
+        }
 
-            logger.info("Заголовки созданы, стили применены, ширина столбцов установлена");
-
-            ExcelUtils.createUnmatchedHeaderRow(newWorkbook, "UnmatchedDataFromFile1", workbook1);
-            ExcelUtils.createUnmatchedHeaderRow(newWorkbook, "UnmatchedDataFromFile2", workbook2);
-
-
-            int rowIndex = 1; // Начинаем с второй строки, так как первая строка для заголовков
-
-            // Обработка данных из file1
-            for (String key : dataFile1.keySet()) {
-                if (dataFile2.containsKey(key)) {
-                    Row row = mergedSheet.createRow(rowIndex++);
-                    int cellIndex = 0;
+        // Конвертация, чтение и индексация обоих файлов выполняются одновременно
+        long loadStart = System.nanoTime();
+        ColumnarTable dataFile1;
+        ColumnarTable dataFile2;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<ColumnarTable> load1 = executor.submit(() -> loadInput(file1Path, KEY_FILE1));
+            Future<ColumnarTable> load2 = executor.submit(() -> loadInput(file2Path, KEY_FILE2));
+            dataFile1 = awaitLoad(load1);
+            dataFile2 = awaitLoad(load2);
+        }
+        long loadMillis = (System.nanoTime() - loadStart) / 1_000_000;
 
-                    // Копирование данных из file1
-                    Row dataRow1 = dataFile1.get(key);
-                    ExcelUtils.copyRowData(dataRow1, row, cellIndex, FILE1_PATH);
+        logger.info("Данные из файлов успешно извлечены за {} мс", loadMillis);
 
-                    // Увеличение cellIndex на количество столбцов в dataRow1
-                    cellIndex += dataRow1.getLastCellNum();
+        // Объединение, сортировка столбцов и группировка в памяти с одной записью результата
+        MergePipeline pipeline = new MergePipeline(dataFile1, dataFile2)
+                .merge(JOIN_MODE)
+                .sortColumns(MergePipeline.MERGED_SHEET, MergePipeline.SORTED_SHEET, rules);
+        if (GROUP_SUMMARY.isEmpty()) {
+            pipeline.group(MergePipeline.SORTED_SHEET, "GroupedData", "ППП (from file2)")
+                    .group(MergePipeline.UNMATCHED_SHEET_1, "Unmatch_1_GroupedData", "Содержание работ.Сводный код XYZ");
+        } else {
+            List<GroupAggregator.Aggregate> aggregates = GroupAggregator.Aggregate.parse(GROUP_SUMMARY);
+            pipeline.summarize(MergePipeline.SORTED_SHEET, "GroupedData", "ППП (from file2)", aggregates)
+                    .summarize(MergePipeline.UNMATCHED_SHEET_1, "Unmatch_1_GroupedData", "Содержание работ.Сводный код XYZ", aggregates);
+        }
+        MergeResult result = new MergeResult(dataFile1.rowCount(), dataFile2.rowCount(),
+                pipeline.getSheet(MergePipeline.MERGED_SHEET).rowCount(),
+                pipeline.getSheet(MergePipeline.UNMATCHED_SHEET_1).rowCount(),
+                pipeline.getSheet(MergePipeline.UNMATCHED_SHEET_2).rowCount(),
+                loadMillis, 0);
+
+        if (!INCREMENTAL) {
+            pipeline.write(ExcelUtils.createOutputWorkbook(STREAMING_WRITE, ROW_WINDOW), outputPath);
+            return result.withTotal(loadStart);
+        }
 
-                    // Копирование данных из file2
-                    Row dataRow2 = dataFile2.get(key);
-                    ExcelUtils.copyRowData(dataRow2, row, cellIndex, FILE2_PATH);
-                } else {
-                    // Если ключ только в dataFile1, добавляем в непринятый лист 1
-                    ExcelUtils.addUnmatchedRow(newWorkbook, dataFile1.get(key), "UnmatchedDataFromFile1");
-                }
-            }
-
-            // Добавление непринятых строк из dataFile2 в непринятый лист 2
-            for (String key : dataFile2.keySet()) {
-                if (!dataFile1.containsKey(key)) {
-                    ExcelUtils.addUnmatchedRow(newWorkbook, dataFile2.get(key), "UnmatchedDataFromFile2");
-                }
+        RowHashIndex index1 = RowHashIndex.build(dataFile1);
+        RowHashIndex index2 = RowHashIndex.build(dataFile2);
+        if (previous != null) {
+            RowHashIndex.Delta delta1 = index1.diff(previous.index1());
+            RowHashIndex.Delta delta2 = index2.diff(previous.index2());
+            logger.info("Изменения с предыдущего запуска: file1 +{} -{} ~{}, file2 +{} -{} ~{}",
+                    delta1.inserted(), delta1.deleted(), delta1.changed(), delta2.inserted(), delta2.deleted(), delta2.changed());
+            if (delta1.isEmpty() && delta2.isEmpty() && Files.exists(Paths.get(outputPath))) {
+                // Файлы пересохранены без изменения данных: результат не перезаписывается
+                logger.info("Данные не изменились, результат {} актуален", outputPath);
+                new IncrementalState(stamp1, stamp2, settings, index1, index2, result).save(statePath);
+                return result.withTotal(loadStart);
             }
+            pipeline.addSheet(CHANGES_SHEET_1, TableViews.rows(dataFile1, affectedRows(dataFile1, delta1)))
+                    .addSheet(CHANGES_SHEET_2, TableViews.rows(dataFile2, affectedRows(dataFile2, delta2)))
+                    .addSheet(DELETED_SHEET_1, TableViews.values("Удаленный ключ", delta1.deletedKeys()))
+                    .addSheet(DELETED_SHEET_2, TableViews.values("Удаленный ключ", delta2.deletedKeys()));
+        }
+        pipeline.write(ExcelUtils.createOutputWorkbook(STREAMING_WRITE, ROW_WINDOW), outputPath);
+        new IncrementalState(stamp1, stamp2, settings, index1, index2, result).save(statePath);
+        return result.withTotal(loadStart);
+    }
 
-            logger.info("Данные объединены");
+    /**
+     * Описание всех настроек, от которых зависит результат объединения, для отпечатка состояния.
+     * Правила расположения столбцов учитываются по содержимому, а не по файлу.
+     *
+     * @param rules загруженные правила расположения столбцов
+     * @return описание настроек
+     */
+    private static String describeSettings(ColumnPairingRules rules) {
+        return String.join("\n", KEY_FILE1.toString(), KEY_FILE2.toString(), JOIN_MODE.name(), GROUP_SUMMARY,
+                Boolean.toString(STREAMING_READ), rules.pairs().toString());
+    }
 
-            // Сохранение объединенных данных в новом Excel файле
-            try (FileOutputStream fileOut = new FileOutputStream("MergedData.xlsx")) {
-                newWorkbook.write(fileOut);
-                logger.info("Объединенные данные сохранены в файл MergedData.xlsx");
+    /**
+     * Строки таблицы с добавленными или измененными ключами в порядке файла.
+     *
+     * @param table таблица текущего запуска
+     * @param delta изменения относительно предыдущего запуска
+     * @return номера строк
+     */
+    private static int[] affectedRows(ColumnarTable table, RowHashIndex.Delta delta) {
+        KeyIndex keyIndex = table.keyIndex();
+        IntList rows = new IntList();
+        for (int keyId = 0; keyId < keyIndex.keyCount(); keyId++) {
+            if (delta.affects(keyIndex.hash(keyId))) {
+                for (int row = keyIndex.firstRow(keyId); row != -1; row = keyIndex.nextRow(row)) {
+                    rows.add(row);
+                }
             }
+        }
+        int[] result = rows.toArray();
+        Arrays.sort(result);
+        return result;
+    }
 
-            TableColumnSorter.sortColumnsByHeaders(newWorkbook, "MergedData");
-
-            // Закрытие рабочих книг
-            workbook1.close();
-            workbook2.close();
-            newWorkbook.close();
-
-            logger.info("Рабочие книги закрыты");
+    /**
+     * Итог объединения пары файлов.
+     *
+     * @param rowsFile1    строк данных в файле подрядчика
+     * @param rowsFile2    строк данных в файле агента
+     * @param matchedRows  строк на листе объединенных данных
+     * @param onlyFile1    строк только из файла подрядчика
+     * @param onlyFile2    строк только из файла агента
+     * @param loadMillis   время загрузки файлов, мс
+     * @param totalMillis  общее время объединения с записью результата, мс
+     */
+    record MergeResult(int rowsFile1, int rowsFile2, int matchedRows, int onlyFile1, int onlyFile2,
+                       long loadMillis, long totalMillis) {
 
-            // Сортировка столбцов по заголовкам в объединенном файле
-            logger.info("Столбцы отсортированы по заголовкам");
+        MergeResult withTotal(long startNanos) {
+            return new MergeResult(rowsFile1, rowsFile2, matchedRows, onlyFile1, onlyFile2, loadMillis,
+                    (System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
 
-        } catch (IOException e) {
-            logger.error("Ошибка при обработке Excel файлов", e);
+    /**
+     * Загружает файл XLS или XLSX в колоночную таблицу с замером времени (и при необходимости экспортирует XLS в XLSX).
+     *
+     * @param filePath путь к исходному файлу
+     * @param keySpec  описание ключа
+     * @return колоночная таблица с индексом по ключу
+     * @throws IOException если возникают ошибки ввода-вывода при обработке файла
+     */
+    private static ColumnarTable loadInput(String filePath, KeySpec keySpec) throws IOException {
+        long start = System.nanoTime();
+        if (EXPORT_XLSX) {
+            exportIfNecessary(filePath);
         }
+        ColumnarTable table = loadData(filePath, keySpec);
+        logger.info("Файл {} загружен за {} мс ({} строк)", filePath, (System.nanoTime() - start) / 1_000_000, table.rowCount());
+        return table;
+    }
 
-        // Группировка строк и подсчет одинаковых строк в том же файле
-        groupRowsAndCountInSameFile("MergedData.xlsx", "SortedData","GroupedData", "ППП (from file2)");
-        groupRowsAndCountInSameFile("MergedData.xlsx", "UnmatchedDataFromFile1","Unmatch_1_GroupedData", "Содержание работ.Сводный код XYZ");
+    /**
+     * Ожидает завершения загрузки файла и разворачивает исключение задачи.
+     *
+     * @param load задача загрузки
+     * @return результат загрузки
+     * @throws IOException если загрузка завершилась ошибкой или была прервана
+     */
+    private static ColumnarTable awaitLoad(Future<ColumnarTable> load) throws IOException {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка файлов прервана", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Ошибка при загрузке файла", e.getCause());
+        }
+    }
 
-        //StartPyConnector(new String[]{});
+    /**
+     * Извлекает данные первого листа файла XLS или XLSX: потоково или через объектную модель POI в зависимости от режима.
+     *
+     * @param filePath путь к файлу XLS или XLSX
+     * @param keySpec  описание ключа
+     * @return колоночная таблица с индексом по ключу
+     * @throws IOException если возникают ошибки ввода-вывода при чтении файла
+     */
+    private static ColumnarTable loadData(String filePath, KeySpec keySpec) throws IOException {
+        if (!filePath.endsWith(".xls") && !filePath.endsWith(".xlsx")) {
+            throw new IOException("Неподдерживаемый формат файла: " + filePath);
+        }
+        return ExcelUtils.extractData(TableCache.wrap(filePath, STREAMING_READ), keySpec);
     }
 
     /**
-     * Метод проверяет, является ли файл в формате XLS и при необходимости конвертирует его в формат XLSX.
+     * Сохраняет копию файла XLS в формате XLSX рядом с исходным. Для загрузки данных конвертация не нужна.
      *
      * @param filePath путь к файлу
-     * @return путь к конвертированному файлу XLSX или исходный путь, если файл уже в формате XLSX
      * @throws IOException если возникают ошибки ввода-вывода при работе с файлами
      */
-    private static String convertIfNecessary(String filePath) throws IOException {
+    private static void exportIfNecessary(String filePath) throws IOException {
         if (filePath.endsWith(".xls")) {
-            logger.info("Обнаружен файл в формате XLS: {}", filePath);
+            logger.info("Экспорт файла XLS в XLSX: {}", filePath);
             String xlsxFilePath = filePath.replace(".xls", ".xlsx");
-            convertXlsToXlsx(filePath, xlsxFilePath);
-            return xlsxFilePath;
-        } else if (filePath.endsWith(".xlsx")) {
-            return filePath;
-        } else {
-            throw new IOException("Неподдерживаемый формат файла: " + filePath);
+            if (STREAMING_CONVERT) {
+                StreamingXlsConverter.convert(filePath, xlsxFilePath);
+            } else {
+                convertXlsToXlsx(filePath, xlsxFilePath);
+            }
         }
     }
 }
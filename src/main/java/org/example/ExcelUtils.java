@@ -1,15 +1,13 @@
 package org.example;
 
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.util.*;
 
 /**
  * Утилитарный класс для работы с Excel файлами.
@@ -18,85 +16,194 @@ public class ExcelUtils {
     private static final Logger logger = LoggerFactory.getLogger(ExcelUtils.class);
 
     /**
-     * Извлекает данные из первой страницы рабочей книги и создает карту с ключами из указанной колонки.
+     * Извлекает данные из первого листа файла XLS или XLSX в потоковом режиме, не загружая рабочую книгу целиком.
      *
-     * @param workbook      Рабочая книга Excel.
+     * @param filePath       Путь к файлу XLS или XLSX.
      * @param keyColumnIndex Индекс колонки, содержащей ключевые значения.
-     * @return Карта, где ключ - значение ячейки из указанной колонки, значение - строка.
+     * @return Колоночная таблица с индексом по ключевой колонке.
+     * @throws IOException Если файл не удалось прочитать.
      */
-    public static Map<String, Row> extractData(Workbook workbook, int keyColumnIndex) {
-        Map<String, Row> dataMap = new HashMap<>();
-        Sheet sheet = workbook.getSheetAt(0);
+    public static ColumnarTable extractData(String filePath, int keyColumnIndex) throws IOException {
+        return extractData(filePath, KeySpec.column(keyColumnIndex));
+    }
+
+    /**
+     * Извлекает данные из первого листа файла XLS или XLSX в потоковом режиме с составным или нормализованным ключом.
+     *
+     * @param filePath Путь к файлу XLS или XLSX.
+     * @param keySpec  Описание ключа.
+     * @return Колоночная таблица с индексом по ключу.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    public static ColumnarTable extractData(String filePath, KeySpec keySpec) throws IOException {
+        ColumnarTable table = extractData(TableCache.wrap(filePath, true), keySpec);
+        logger.info("Данные успешно извлечены из файла {} ({} строк).", filePath, table.rowCount());
+        return table;
+    }
+
+    /**
+     * Извлекает данные из источника строк в колоночную таблицу.
+     *
+     * @param source  Источник строк первого листа.
+     * @param keySpec Описание ключа.
+     * @return Колоночная таблица с индексом по ключу.
+     * @throws IOException Если источник не удалось прочитать.
+     */
+    public static ColumnarTable extractData(RowSource source, KeySpec keySpec) throws IOException {
+        ColumnarTable.Builder builder = ColumnarTable.builder(keySpec);
+        source.read(builder);
+        return builder.build();
+    }
+
+    /**
+     * Передает все непустые ячейки листа обработчику строк.
+     *
+     * @param sheet   Лист для чтения.
+     * @param handler Обработчик строк.
+     */
+    public static void readSheet(Sheet sheet, SheetRowHandler handler) {
         for (Row row : sheet) {
-            Cell cell = row.getCell(keyColumnIndex);
-            if (cell != null) {
-                String key = getCellValueAsString(cell);
-                dataMap.put(key, row);
+            handler.startRow(row.getRowNum());
+            for (Cell cell : row) {
+                int columnIndex = cell.getColumnIndex();
+                switch (cell.getCellType()) {
+                    case STRING -> handler.stringCell(columnIndex, cell.getStringCellValue());
+                    case NUMERIC -> handler.numericCell(columnIndex, CellValues.number(cell), CellValues.isDate(cell));
+                    case BOOLEAN -> handler.booleanCell(columnIndex, CellValues.bool(cell));
+                    case FORMULA -> handler.stringCell(columnIndex, cell.getCellFormula());
+                    case BLANK -> {
+                    }
+                    default -> handler.stringCell(columnIndex, cell.toString());
+                }
             }
+            handler.endRow(row.getRowNum());
         }
-        logger.info("Данные успешно извлечены из рабочей книги.");
-        return dataMap;
     }
 
     /**
-     * Создает строку заголовка в указанном листе на основе заголовков из двух рабочих книг.
+     * Создает рабочую книгу для записи результата.
+     * <p>
+     * В потоковом режиме используется {@link SXSSFWorkbook}: в памяти держится не более {@code rowWindow}
+     * строк на лист, остальные сбрасываются в сжатые временные файлы. Строки за пределами окна
+     * недоступны для чтения через {@link Sheet#getRow(int)}.
      *
-     * @param sheet    Лист, в который добавляется строка заголовка.
-     * @param workbook1 Первая рабочая книга.
-     * @param workbook2 Вторая рабочая книга.
+     * @param streaming Использовать ли потоковую запись.
+     * @param rowWindow Размер окна строк для потоковой записи.
+     * @return Новая рабочая книга.
      */
-    public static void createHeaderRow(Sheet sheet, Workbook workbook1, Workbook workbook2) {
-        Row headerRow = sheet.createRow(0);
+    public static Workbook createOutputWorkbook(boolean streaming, int rowWindow) {
+        if (!streaming) {
+            return new XSSFWorkbook();
+        }
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow);
+        workbook.setCompressTempFiles(true);
+        logger.info("Создана потоковая рабочая книга с окном {} строк.", rowWindow);
+        return workbook;
+    }
+
+    /**
+     * Закрывает рабочую книгу результата. Для {@link SXSSFWorkbook} закрытие также удаляет временные файлы
+     * потоковой записи.
+     *
+     * @param workbook Рабочая книга.
+     * @throws IOException Если рабочую книгу не удалось закрыть.
+     */
+    public static void closeOutputWorkbook(Workbook workbook) throws IOException {
+        workbook.close();
+    }
+
+    /**
+     * Формирует заголовок объединенной таблицы с указанием источника каждого столбца.
+     *
+     * @param header1 Заголовки первого файла.
+     * @param header2 Заголовки второго файла.
+     * @return Заголовки вида "Имя (from file1)", "Имя (from file2)".
+     */
+    public static String[] mergedHeader(String[] header1, String[] header2) {
+        String[] header = new String[header1.length + header2.length];
         Set<String> addedHeaders = new HashSet<>();
 
-        Sheet sheet1 = workbook1.getSheetAt(0);
-        Row headerRow1 = sheet1.getRow(0);
         int cellIndex = 0;
-        for (Cell cell : headerRow1) {
-            String headerValue = getCellValueAsString(cell);
+        for (String headerValue : header1) {
             String newHeaderValue = headerValue + " (from file1)";
             if (addedHeaders.contains(newHeaderValue)) {
                 newHeaderValue = headerValue + " (from file1, duplicate)";
             }
-            Cell newCell = headerRow.createCell(cellIndex++);
-            newCell.setCellValue(newHeaderValue);
+            header[cellIndex++] = newHeaderValue;
             addedHeaders.add(newHeaderValue);
         }
 
-        Sheet sheet2 = workbook2.getSheetAt(0);
-        Row headerRow2 = sheet2.getRow(0);
-        for (Cell cell : headerRow2) {
-            String headerValue = getCellValueAsString(cell);
+        for (String headerValue : header2) {
             String newHeaderValue = headerValue + " (from file2)";
             if (addedHeaders.contains(newHeaderValue)) {
                 newHeaderValue = headerValue + " (from file2, duplicate)";
             }
-            Cell newCell = headerRow.createCell(cellIndex++);
-            newCell.setCellValue(newHeaderValue);
+            header[cellIndex++] = newHeaderValue;
             addedHeaders.add(newHeaderValue);
         }
-        logger.info("Строка заголовка успешно создана.");
+        return header;
     }
 
     /**
-     * Копирует данные из одной строки в другую, начиная с указанного индекса.
+     * Копирует строку таблицы в целевую строку, начиная с указанного индекса.
      *
-     * @param sourceRow Исходная строка.
-     * @param targetRow Целевая строка.
+     * @param table      Исходная таблица.
+     * @param rowId      Номер строки в таблице.
+     * @param targetRow  Целевая строка.
      * @param startIndex Индекс, с которого начинается копирование.
-     * @param sourceFile Источник файла.
      */
-    public static void copyRowData(Row sourceRow, Row targetRow, int startIndex, String sourceFile) {
-        if (sourceRow != null && targetRow != null) {
-            int numCellsToCopy = sourceRow.getLastCellNum();
-            for (int i = 0; i < numCellsToCopy; i++) {
-                Cell sourceCell = sourceRow.getCell(i);
-                Cell targetCell = targetRow.createCell(startIndex++);
-                setCellValue(sourceCell, targetCell);
+    public static void copyRowData(TableView table, int rowId, Row targetRow, int startIndex) {
+        if (table != null && targetRow != null) {
+            for (int i = 0; i < table.columnCount(); i++) {
+                table.writeCell(rowId, i, targetRow.createCell(startIndex++));
             }
         }
     }
 
+    /**
+     * Создает лист и записывает в него заголовок и все строки таблицы.
+     *
+     * @param workbook  Рабочая книга Excel.
+     * @param sheetName Имя создаваемого листа.
+     * @param table     Таблица для записи.
+     * @return Созданный лист.
+     */
+    public static Sheet writeSheet(Workbook workbook, String sheetName, TableView table) {
+        Sheet sheet = workbook.createSheet(sheetName);
+        Row headerRow = sheet.createRow(0);
+        String[] header = table.header();
+        for (int i = 0; i < header.length; i++) {
+            headerRow.createCell(i).setCellValue(header[i]);
+        }
+        for (int rowId = 0; rowId < table.rowCount(); rowId++) {
+            copyRowData(table, rowId, sheet.createRow(rowId + 1), 0);
+        }
+        logger.info("Лист '{}' записан ({} строк).", sheetName, table.rowCount());
+        return sheet;
+    }
+
+    /**
+     * Устанавливает в целевую ячейку значение ячейки колоночной таблицы без промежуточных объектов.
+     *
+     * @param table      Исходная таблица.
+     * @param rowId      Номер строки в таблице.
+     * @param column     Индекс колонки в таблице.
+     * @param targetCell Целевая ячейка.
+     */
+    public static void setCellValue(ColumnarTable table, int rowId, int column, Cell targetCell) {
+        if (table.isBlank(rowId, column)) {
+            targetCell.setCellValue(""); // Обработка пустых ячеек
+        } else if (table.isDate(rowId, column)) {
+            targetCell.setCellValue(DateUtil.getJavaDate(table.getNumber(rowId, column)));
+        } else if (table.isNumeric(rowId, column)) {
+            targetCell.setCellValue(table.getNumber(rowId, column));
+        } else if (table.isBoolean(rowId, column)) {
+            targetCell.setCellValue(table.getBoolean(rowId, column));
+        } else {
+            targetCell.setCellValue(table.getString(rowId, column));
+        }
+    }
+
     /**
      * Устанавливает значение ячейки в целевую ячейку на основе значения исходной ячейки.
      *
@@ -134,93 +241,44 @@ public class ExcelUtils {
     }
 
     /**
-     * Возвращает значение ячейки в виде строки.
+     * Применяет стили к колонкам листа, начиная с указанного индекса.
      *
-     * @param cell Ячейка для получения значения.
-     * @return Значение ячейки в виде строки.
+     * @param sheet Лист для применения стилей.
+     * @param startIndex Начальный индекс колонки.
+     * @param numColumns Количество колонок для стилизации.
+     * @param source Источник файла для различной стилизации.
      */
-    public static String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return "";
-        }
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-                    return df.format(cell.getDateCellValue());
-                } else {
-                    return Double.toString(cell.getNumericCellValue());
-                }
-            case BOOLEAN:
-                return Boolean.toString(cell.getBooleanCellValue());
-            case FORMULA:
-                return cell.getCellFormula();
-            case BLANK:
-                return "";
-            default:
-                return cell.toString();
-        }
+    public static void applyColumnStyles(Sheet sheet, int startIndex, int numColumns, String source) {
+        applyColumnStyles(new StyleRegistry(sheet.getWorkbook()), sheet, startIndex, numColumns, source);
     }
 
     /**
-     * Применяет стили к колонкам листа, начиная с указанного индекса.
+     * Применяет стили к колонкам листа, начиная с указанного индекса. Все колонки одного источника
+     * получают один общий стиль из реестра рабочей книги.
      *
+     * @param styles Реестр стилей рабочей книги листа.
      * @param sheet Лист для применения стилей.
      * @param startIndex Начальный индекс колонки.
      * @param numColumns Количество колонок для стилизации.
      * @param source Источник файла для различной стилизации.
      */
-    public static void applyColumnStyles(Sheet sheet, int startIndex, int numColumns, String source) {
-        Workbook workbook = sheet.getWorkbook();
-        CellStyle style = workbook.createCellStyle();
-        Font font = workbook.createFont();
-        font.setBold(true);
-        style.setFont(font);
+    public static void applyColumnStyles(StyleRegistry styles, Sheet sheet, int startIndex, int numColumns, String source) {
+        Row headerRow = sheet.getRow(0);
+        int actualNumColumns = headerRow != null ? Math.min(numColumns, headerRow.getLastCellNum() - startIndex) : numColumns;
 
-        int actualNumColumns = Math.min(numColumns, sheet.getRow(0).getLastCellNum() - startIndex);
+        // Установка разных цветов на основе источника
+        IndexedColors color;
+        if (source.equals("file1")) {
+            color = IndexedColors.LIGHT_TURQUOISE;
+        } else if (source.equals("file2")) {
+            color = IndexedColors.LIGHT_GREEN;
+        } else {
+            color = IndexedColors.GREY_25_PERCENT;
+        }
+        CellStyle columnStyle = styles.boldFilled(color);
 
         for (int i = startIndex; i < startIndex + actualNumColumns; i++) {
-            CellStyle columnStyle = workbook.createCellStyle();
-            columnStyle.cloneStyleFrom(style);
-
-            // Установка разных цветов на основе источника
-            if (source.equals("file1")) {
-                columnStyle.setFillForegroundColor(IndexedColors.LIGHT_TURQUOISE.getIndex());
-            } else if (source.equals("file2")) {
-                columnStyle.setFillForegroundColor(IndexedColors.LIGHT_GREEN.getIndex());
-            } else {
-                columnStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-            }
-
-            columnStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
             sheet.setDefaultColumnStyle(i, columnStyle);
         }
     }
-
-    public static void createUnmatchedHeaderRow(Workbook workbook, String sheetName, Workbook sourceWorkbook) {
-        Sheet sheet = workbook.createSheet(sheetName);
-        Row sourceHeaderRow = sourceWorkbook.getSheetAt(0).getRow(0); // предполагается, что заголовок находится в первой строке
-        Row headerRow = sheet.createRow(0);
-        for (int i = 0; i < sourceHeaderRow.getLastCellNum(); i++) {
-            headerRow.createCell(i).setCellValue(sourceHeaderRow.getCell(i).getStringCellValue());
-        }
-    }
-
-    /**
-     * Добавляет строку в лист с несоответствующими данными.
-     *
-     * @param workbook Рабочая книга Excel.
-     * @param sourceRow Исходная строка.
-     * @param sheetName Имя листа для добавления строки.
-     */
-    public static void addUnmatchedRow(Workbook workbook, Row sourceRow, String sheetName) {
-        Sheet unmatchedSheet = workbook.getSheet(sheetName);
-
-        int rowIndex = unmatchedSheet.getLastRowNum() + 1;
-        Row newRow = unmatchedSheet.createRow(rowIndex);
-        copyRowData(sourceRow, newRow, 0, ""); // Путь к исходному файлу не нужен для несоответствующих строк
-    }
-
 }
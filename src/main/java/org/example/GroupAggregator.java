@@ -0,0 +1,723 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Хеш-агрегация строк по значению столбца группировки.
+ * <p>
+ * Строки не сохраняются: каждая строка сразу учитывается в накопителях своей группы, поэтому память
+ * пропорциональна числу групп, а не числу строк (кроме {@link Function#DISTINCT}, которому нужны различные
+ * значения группы). Накопители - примитивные массивы по номеру группы; группы нумеруются в порядке первого
+ * появления, в том же порядке выводится результат. Строки поступают либо потоково от {@link RowSource}
+ * (первая строка - заголовок), либо из {@link TableView} - тогда читаются только нужные столбцы.
+ * <p>
+ * Таблица в памяти может агрегироваться параллельно: строки делятся на непрерывные диапазоны, каждая задача
+ * {@link ForkJoinPool} строит собственный частичный результат без синхронизации, а частичные результаты
+ * попарно объединяются по дереву задач - левый диапазон с правым. Группы правого диапазона, которых нет в
+ * левом, добавляются после групп левого, поэтому порядок групп совпадает с последовательным проходом.
+ */
+public class GroupAggregator {
+    private static final Logger logger = LoggerFactory.getLogger(GroupAggregator.class);
+    // Минимальное число строк в диапазоне параллельной агрегации: меньшие диапазоны не окупают объединение
+    private static final int MIN_RANGE_ROWS = 8192;
+
+    /**
+     * Агрегатная функция.
+     */
+    public enum Function {
+        /** Число строк группы (без столбца) или непустых значений столбца. */
+        COUNT("Кол-во"),
+        /** Сумма числовых значений. */
+        SUM("Сумма"),
+        /** Минимум числовых значений (включая даты). */
+        MIN("Мин"),
+        /** Максимум числовых значений (включая даты). */
+        MAX("Макс"),
+        /** Число различных непустых значений. */
+        DISTINCT("Различных"),
+        /** Первое непустое значение. */
+        FIRST("Первое"),
+        /** Последнее непустое значение. */
+        LAST("Последнее");
+
+        private final String label;
+
+        Function(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Агрегат результата.
+     *
+     * @param function Функция.
+     * @param column   Заголовок столбца или {@code null} для числа строк ({@link Function#COUNT}).
+     */
+    public record Aggregate(Function function, String column) {
+
+        public Aggregate {
+            if (column == null && function != Function.COUNT) {
+                throw new IllegalArgumentException("Для функции " + function + " нужно указать столбец.");
+            }
+        }
+
+        /**
+         * Число строк группы.
+         *
+         * @return Агрегат.
+         */
+        public static Aggregate count() {
+            return new Aggregate(Function.COUNT, null);
+        }
+
+        /**
+         * Разбирает список агрегатов вида {@code count,sum:Количество,max:Дата}.
+         *
+         * @param spec Список через запятую: функция и, через двоеточие, заголовок столбца.
+         * @return Агрегаты.
+         * @throws IllegalArgumentException Если функция неизвестна.
+         */
+        public static List<Aggregate> parse(String spec) {
+            List<Aggregate> aggregates = new ArrayList<>();
+            for (String item : spec.split(",")) {
+                String trimmed = item.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                int colon = trimmed.indexOf(':');
+                String name = colon == -1 ? trimmed : trimmed.substring(0, colon);
+                Function function;
+                try {
+                    function = Function.valueOf(name.trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Неизвестная агрегатная функция: " + name);
+                }
+                aggregates.add(new Aggregate(function, colon == -1 ? null : trimmed.substring(colon + 1).trim()));
+            }
+            return aggregates;
+        }
+
+        /**
+         * Заголовок столбца результата, например {@code Сумма(Количество)}.
+         */
+        String label() {
+            return column == null ? function.label : function.label + "(" + column + ")";
+        }
+    }
+
+    private final String groupingColumnName;
+    private final List<Aggregate> aggregates;
+    private final Map<String, Integer> groupIds = new HashMap<>();
+    private final List<String> groupKeys = new ArrayList<>();
+    private final Accumulator[] accumulators;
+    // Номера строк каждой группы, если они нужны для вывода строк групп
+    private final List<IntList> groupRows;
+    private int groupColumn = -1;
+    private int[] columns;
+    private long rowCount;
+
+    private GroupAggregator(String groupingColumnName, List<Aggregate> aggregates, boolean keepRows) {
+        this.groupingColumnName = groupingColumnName;
+        this.aggregates = List.copyOf(aggregates);
+        this.accumulators = new Accumulator[aggregates.size()];
+        for (int i = 0; i < accumulators.length; i++) {
+            accumulators[i] = new Accumulator(aggregates.get(i).function());
+        }
+        this.groupRows = keepRows ? new ArrayList<>() : null;
+    }
+
+    /**
+     * Агрегирует строки файла за один потоковый проход.
+     *
+     * @param source             Источник строк; первая строка - заголовок.
+     * @param groupingColumnName Заголовок столбца группировки.
+     * @param aggregates         Агрегаты.
+     * @return Результат: по строке на группу.
+     * @throws IOException              Если источник не удалось прочитать.
+     * @throws IllegalArgumentException Если столбец не найден в заголовке.
+     */
+    public static Result aggregate(RowSource source, String groupingColumnName, List<Aggregate> aggregates) throws IOException {
+        GroupAggregator aggregator = new GroupAggregator(groupingColumnName, aggregates, false);
+        Collector collector = aggregator.new Collector();
+        source.read(collector);
+        if (aggregator.columns == null) {
+            aggregator.resolve(new String[0]);
+        }
+        return aggregator.result();
+    }
+
+    /**
+     * Агрегирует строки таблицы в памяти.
+     *
+     * @param source             Таблица.
+     * @param groupingColumnName Заголовок столбца группировки.
+     * @param aggregates         Агрегаты.
+     * @return Результат: по строке на группу.
+     * @throws IllegalArgumentException Если столбец не найден в заголовке.
+     */
+    public static Result aggregate(TableView source, String groupingColumnName, List<Aggregate> aggregates) {
+        return aggregate(source, groupingColumnName, aggregates, false, null);
+    }
+
+    /**
+     * Агрегирует строки таблицы в памяти параллельно в указанном пуле. Группы и значения {@link Function#MIN},
+     * {@link Function#MAX}, {@link Function#FIRST} и {@link Function#LAST} совпадают с последовательной
+     * агрегацией; суммы складываются по диапазонам и могут отличаться в последних знаках.
+     *
+     * @param source             Таблица.
+     * @param groupingColumnName Заголовок столбца группировки.
+     * @param aggregates         Агрегаты.
+     * @param pool               Пул для выполнения задач.
+     * @return Результат: по строке на группу.
+     * @throws IllegalArgumentException Если столбец не найден в заголовке.
+     */
+    public static Result aggregate(TableView source, String groupingColumnName, List<Aggregate> aggregates, ForkJoinPool pool) {
+        return aggregate(source, groupingColumnName, aggregates, false, pool);
+    }
+
+    /**
+     * Группирует строки таблицы в памяти: для каждой группы сохраняются номера ее строк по возрастанию
+     * ({@link Result#rows(int)}) и их число.
+     *
+     * @param source             Таблица.
+     * @param groupingColumnName Заголовок столбца группировки.
+     * @param pool               Пул для параллельной группировки или {@code null} для группировки в текущем потоке.
+     * @return Результат: по строке на группу.
+     * @throws IllegalArgumentException Если столбец не найден в заголовке.
+     */
+    static Result groupRows(TableView source, String groupingColumnName, ForkJoinPool pool) {
+        return aggregate(source, groupingColumnName, List.of(Aggregate.count()), true, pool);
+    }
+
+    private static Result aggregate(TableView source, String groupingColumnName, List<Aggregate> aggregates, boolean keepRows,
+                                    ForkJoinPool pool) {
+        GroupAggregator template = new GroupAggregator(groupingColumnName, aggregates, keepRows);
+        template.resolve(source.header());
+        int rows = source.rowCount();
+        GroupAggregator aggregator;
+        if (pool == null) {
+            aggregator = template.aggregateRange(source, 0, rows);
+        } else {
+            int rangeRows = Math.max(MIN_RANGE_ROWS, rows / (pool.getParallelism() * 4) + 1);
+            aggregator = pool.invoke(new RangeTask(template, source, rangeRows, 0, rows));
+        }
+        return aggregator.result();
+    }
+
+    /**
+     * Новый пустой агрегатор с теми же агрегатами и столбцами.
+     */
+    private GroupAggregator copy() {
+        GroupAggregator copy = new GroupAggregator(groupingColumnName, aggregates, groupRows != null);
+        copy.groupColumn = groupColumn;
+        copy.columns = columns;
+        return copy;
+    }
+
+    /**
+     * Агрегирует диапазон строк таблицы в новом агрегаторе.
+     */
+    private GroupAggregator aggregateRange(TableView source, int from, int to) {
+        GroupAggregator aggregator = copy();
+        Collector collector = aggregator.new Collector();
+        int[] needed = neededColumns();
+        for (int row = from; row < to; row++) {
+            collector.startRow(row + 1);
+            for (int column : needed) {
+                source.readCell(row, column, collector, column);
+            }
+            aggregator.accept(collector, row);
+        }
+        return aggregator;
+    }
+
+    /**
+     * Добавляет частичный результат диапазона, следующего за строками этого агрегатора.
+     */
+    private void merge(GroupAggregator other) {
+        rowCount += other.rowCount;
+        for (int otherId = 0; otherId < other.groupKeys.size(); otherId++) {
+            int id = groupId(other.groupKeys.get(otherId));
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i].merge(id, other.accumulators[i], otherId);
+            }
+            if (groupRows != null) {
+                groupRows.get(id).addAll(other.groupRows.get(otherId));
+            }
+        }
+    }
+
+    private void resolve(String[] header) {
+        groupColumn = indexOf(header, groupingColumnName);
+        columns = new int[aggregates.size()];
+        for (int i = 0; i < columns.length; i++) {
+            String column = aggregates.get(i).column();
+            columns[i] = column == null ? -1 : indexOf(header, column);
+        }
+    }
+
+    private static int indexOf(String[] header, String name) {
+        for (int i = 0; i < header.length; i++) {
+            if (name.equals(header[i])) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Колонка '" + name + "' не найдена.");
+    }
+
+    private int[] neededColumns() {
+        IntList needed = new IntList(columns.length + 1);
+        needed.add(groupColumn);
+        for (int column : columns) {
+            if (column != -1) {
+                needed.add(column);
+            }
+        }
+        return needed.toArray();
+    }
+
+    private void accept(RowBuffer row, int rowId) {
+        rowCount++;
+        int id = groupId(row.asString(groupColumn));
+        for (int i = 0; i < accumulators.length; i++) {
+            accumulators[i].add(id, row, columns[i]);
+        }
+        if (groupRows != null) {
+            groupRows.get(id).add(rowId);
+        }
+    }
+
+    private int groupId(String key) {
+        Integer id = groupIds.get(key);
+        if (id == null) {
+            id = groupKeys.size();
+            groupIds.put(key, id);
+            groupKeys.add(key);
+            if (groupRows != null) {
+                groupRows.add(new IntList(4));
+            }
+        }
+        return id;
+    }
+
+    private Result result() {
+        logger.info("Строки сгруппированы по колонке '{}': {} строк, {} групп.", groupingColumnName, rowCount, groupKeys.size());
+        String[] header = new String[aggregates.size() + 1];
+        header[0] = groupingColumnName;
+        for (int i = 0; i < aggregates.size(); i++) {
+            header[i + 1] = aggregates.get(i).label();
+        }
+        return new Result(header, groupKeys.toArray(new String[0]), accumulators, groupRows, rowCount);
+    }
+
+    /**
+     * Принимает строки источника: первая строка - заголовок, остальные сразу учитываются в накопителях.
+     */
+    private class Collector extends RowBuffer {
+
+        @Override
+        public void endRow(int rowNum) {
+            if (columns == null) {
+                String[] header = new String[width()];
+                for (int i = 0; i < header.length; i++) {
+                    header[i] = asString(i);
+                }
+                resolve(header);
+                return;
+            }
+            accept(this, rowNum);
+        }
+    }
+
+    /**
+     * Агрегирует диапазон строк, рекурсивно деля его пополам; результат левой половины объединяется
+     * с результатом правой.
+     */
+    private static class RangeTask extends RecursiveTask<GroupAggregator> {
+        private final GroupAggregator template;
+        private final TableView source;
+        private final int rangeRows;
+        private final int from;
+        private final int to;
+
+        RangeTask(GroupAggregator template, TableView source, int rangeRows, int from, int to) {
+            this.template = template;
+            this.source = source;
+            this.rangeRows = rangeRows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GroupAggregator compute() {
+            if (to - from <= rangeRows) {
+                return template.aggregateRange(source, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(template, source, rangeRows, from, middle);
+            left.fork();
+            GroupAggregator right = new RangeTask(template, source, rangeRows, middle, to).compute();
+            GroupAggregator result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+
+    /**
+     * Накопитель одной агрегатной функции по всем группам.
+     */
+    static class Accumulator {
+        private final Function function;
+        private long[] counts = new long[16];
+        private double[] numbers = new double[16];
+        private byte[] kinds = new byte[16];
+        private String[] strings;
+        private LongSet[] distinct;
+
+        Accumulator(Function function) {
+            this.function = function;
+            if (function == Function.FIRST || function == Function.LAST) {
+                strings = new String[16];
+            }
+            if (function == Function.DISTINCT) {
+                distinct = new LongSet[16];
+            }
+        }
+
+        void add(int group, RowBuffer row, int column) {
+            if (group == counts.length) {
+                grow();
+            }
+            byte kind = column == -1 ? RowBuffer.NUMBER : row.kind(column);
+            if (kind == RowBuffer.BLANK) {
+                return;
+            }
+            switch (function) {
+                case COUNT -> counts[group]++;
+                case SUM -> {
+                    if (kind == RowBuffer.NUMBER) {
+                        numbers[group] += row.number(column);
+                        counts[group]++;
+                    }
+                }
+                case MIN, MAX -> {
+                    if (kind == RowBuffer.NUMBER || kind == RowBuffer.DATE) {
+                        double value = row.number(column);
+                        if (counts[group]++ == 0 || (function == Function.MIN ? value < numbers[group] : value > numbers[group])) {
+                            numbers[group] = value;
+                            kinds[group] = kind;
+                        }
+                    }
+                }
+                case DISTINCT -> {
+                    if (distinct[group] == null) {
+                        distinct[group] = new LongSet();
+                    }
+                    distinct[group].add(valueHash(kind, row, column));
+                }
+                case FIRST, LAST -> {
+                    if (function == Function.LAST || counts[group] == 0) {
+                        kinds[group] = kind;
+                        numbers[group] = row.number(column);
+                        strings[group] = kind == RowBuffer.STRING ? row.string(column) : null;
+                    }
+                    counts[group]++;
+                }
+            }
+        }
+
+        /**
+         * Добавляет к группе накопленное значение группы другого накопителя той же функции, собранное
+         * по строкам после строк этого накопителя.
+         */
+        void merge(int group, Accumulator other, int otherGroup) {
+            if (group == counts.length) {
+                grow();
+            }
+            long otherCount = other.counts[otherGroup];
+            switch (function) {
+                case COUNT -> counts[group] += otherCount;
+                case SUM -> {
+                    numbers[group] += other.numbers[otherGroup];
+                    counts[group] += otherCount;
+                }
+                case MIN, MAX -> {
+                    double value = other.numbers[otherGroup];
+                    if (otherCount > 0 && (counts[group] == 0
+                            || (function == Function.MIN ? value < numbers[group] : value > numbers[group]))) {
+                        numbers[group] = value;
+                        kinds[group] = other.kinds[otherGroup];
+                    }
+                    counts[group] += otherCount;
+                }
+                case DISTINCT -> {
+                    LongSet values = other.distinct[otherGroup];
+                    if (values != null) {
+                        if (distinct[group] == null) {
+                            distinct[group] = new LongSet();
+                        }
+                        distinct[group].addAll(values);
+                    }
+                }
+                case FIRST, LAST -> {
+                    if (otherCount > 0 && (function == Function.LAST || counts[group] == 0)) {
+                        kinds[group] = other.kinds[otherGroup];
+                        numbers[group] = other.numbers[otherGroup];
+                        strings[group] = other.strings[otherGroup];
+                    }
+                    counts[group] += otherCount;
+                }
+            }
+        }
+
+        /**
+         * Вид значения группы в результате: число для счетчиков, иначе тип накопленного значения.
+         */
+        byte kind(int group) {
+            return switch (function) {
+                case COUNT, DISTINCT -> RowBuffer.NUMBER;
+                case SUM -> counts[group] == 0 ? RowBuffer.BLANK : RowBuffer.NUMBER;
+                default -> counts[group] == 0 ? RowBuffer.BLANK : kinds[group];
+            };
+        }
+
+        double number(int group) {
+            return switch (function) {
+                case COUNT -> counts[group];
+                case DISTINCT -> distinct[group] == null ? 0 : distinct[group].size();
+                default -> numbers[group];
+            };
+        }
+
+        String string(int group) {
+            return strings[group];
+        }
+
+        private void grow() {
+            int size = counts.length * 2;
+            counts = Arrays.copyOf(counts, size);
+            numbers = Arrays.copyOf(numbers, size);
+            kinds = Arrays.copyOf(kinds, size);
+            if (strings != null) {
+                strings = Arrays.copyOf(strings, size);
+            }
+            if (distinct != null) {
+                distinct = Arrays.copyOf(distinct, size);
+            }
+        }
+
+        /**
+         * 64-битный отпечаток значения (тип и значение); совпадение отпечатков считается равенством значений.
+         */
+        private static long valueHash(byte kind, RowBuffer row, int column) {
+            long hash = mix(0xcbf29ce484222325L, kind);
+            if (kind != RowBuffer.STRING) {
+                return mix(hash, Double.doubleToLongBits(row.number(column)));
+            }
+            String value = row.string(column);
+            hash = mix(hash, value.length());
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+            }
+            return mix(hash, 0);
+        }
+
+        private static long mix(long hash, long value) {
+            long h = (hash ^ value) * 0x9e3779b97f4a7c15L;
+            return h ^ (h >>> 32);
+        }
+    }
+
+    /**
+     * Множество значений {@code long} с открытой адресацией.
+     */
+    static class LongSet {
+        private long[] values = new long[8];
+        private boolean containsZero;
+        private int size;
+
+        void add(long value) {
+            if (value == 0) {
+                if (!containsZero) {
+                    containsZero = true;
+                    size++;
+                }
+                return;
+            }
+            if ((size + 1) * 2 > values.length) {
+                rehash(values.length * 2);
+            }
+            if (insert(values, value)) {
+                size++;
+            }
+        }
+
+        void addAll(LongSet other) {
+            if (other.containsZero) {
+                add(0);
+            }
+            for (long value : other.values) {
+                if (value != 0) {
+                    add(value);
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static boolean insert(long[] table, long value) {
+            int mask = table.length - 1;
+            int slot = (int) value & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+            return true;
+        }
+
+        private void rehash(int capacity) {
+            long[] table = new long[capacity];
+            for (long value : values) {
+                if (value != 0) {
+                    insert(table, value);
+                }
+            }
+            values = table;
+        }
+    }
+
+    /**
+     * Результат агрегации: столбец группировки и по столбцу на агрегат, строка на группу.
+     */
+    public static class Result implements TableView {
+        private final String[] header;
+        private final String[] keys;
+        private final Accumulator[] accumulators;
+        private final List<IntList> groupRows;
+        private final long sourceRows;
+
+        private Result(String[] header, String[] keys, Accumulator[] accumulators, List<IntList> groupRows, long sourceRows) {
+            this.header = header;
+            this.keys = keys;
+            this.accumulators = accumulators;
+            this.groupRows = groupRows;
+            this.sourceRows = sourceRows;
+        }
+
+        /**
+         * Номера строк источника в группе по возрастанию; доступны только для результата
+         * {@link GroupAggregator#groupRows(TableView, String, ForkJoinPool)}.
+         *
+         * @param row Номер группы.
+         * @return Номера строк.
+         */
+        IntList rows(int row) {
+            return groupRows.get(row);
+        }
+
+        /**
+         * Число агрегированных строк источника.
+         *
+         * @return Число строк.
+         */
+        public long sourceRows() {
+            return sourceRows;
+        }
+
+        @Override
+        public String[] header() {
+            return header;
+        }
+
+        @Override
+        public int columnCount() {
+            return header.length;
+        }
+
+        @Override
+        public int rowCount() {
+            return keys.length;
+        }
+
+        /**
+         * Числовое значение агрегата (для счетчиков - число).
+         *
+         * @param row    Номер группы.
+         * @param column Индекс столбца результата (с 1).
+         * @return Значение.
+         */
+        public double getNumber(int row, int column) {
+            return accumulators[column - 1].number(row);
+        }
+
+        @Override
+        public String getString(int row, int column) {
+            if (column == 0) {
+                return keys[row];
+            }
+            Accumulator accumulator = accumulators[column - 1];
+            return switch (accumulator.kind(row)) {
+                case RowBuffer.STRING -> accumulator.string(row);
+                case RowBuffer.NUMBER -> accumulator.function == Function.COUNT || accumulator.function == Function.DISTINCT
+                        ? Long.toString((long) accumulator.number(row))
+                        : Double.toString(accumulator.number(row));
+                case RowBuffer.DATE -> CellValues.formatDate(accumulator.number(row));
+                case RowBuffer.BOOLEAN -> accumulator.number(row) != 0 ? "true" : "false";
+                default -> "";
+            };
+        }
+
+        @Override
+        public void writeCell(int row, int column, Cell targetCell) {
+            if (column == 0) {
+                targetCell.setCellValue(keys[row]);
+                return;
+            }
+            Accumulator accumulator = accumulators[column - 1];
+            switch (accumulator.kind(row)) {
+                case RowBuffer.STRING -> targetCell.setCellValue(accumulator.string(row));
+                case RowBuffer.NUMBER -> targetCell.setCellValue(accumulator.number(row));
+                case RowBuffer.DATE -> targetCell.setCellValue(DateUtil.getJavaDate(accumulator.number(row)));
+                case RowBuffer.BOOLEAN -> targetCell.setCellValue(accumulator.number(row) != 0);
+                default -> targetCell.setCellValue("");
+            }
+        }
+
+        @Override
+        public void readCell(int row, int column, SheetRowHandler handler, int targetColumn) {
+            if (column == 0) {
+                if (!keys[row].isEmpty()) {
+                    handler.stringCell(targetColumn, keys[row]);
+                }
+                return;
+            }
+            Accumulator accumulator = accumulators[column - 1];
+            switch (accumulator.kind(row)) {
+                case RowBuffer.STRING -> handler.stringCell(targetColumn, accumulator.string(row));
+                case RowBuffer.NUMBER -> handler.numericCell(targetColumn, accumulator.number(row), false);
+                case RowBuffer.DATE -> handler.numericCell(targetColumn, accumulator.number(row), true);
+                case RowBuffer.BOOLEAN -> handler.booleanCell(targetColumn, accumulator.number(row) != 0);
+                default -> {
+                }
+            }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package org.example;
 
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,12 +8,15 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Класс для группировки строк в Excel-файле по указанному полю и подсчета количества строк в каждой группе.
  */
 public class GroupRowsByPositionAndCount {
     private static final Logger logger = LoggerFactory.getLogger(GroupRowsByPositionAndCount.class);
+    // Параллельная группировка таблиц в памяти: диапазоны строк группируются в общем пуле ForkJoin
+    private static final boolean PARALLEL = Boolean.parseBoolean(System.getProperty("datamerge.parallelGrouping", "true"));
 
     /**
      * Группирует строки и подсчитывает их количество в одном и том же файле.
@@ -28,7 +30,7 @@ public class GroupRowsByPositionAndCount {
     public static void groupRowsAndCountInSameFile(String inputFilePath, String sourceSheetName, String targetSheetName, String groupingColumnName) throws IOException {
         logger.info("Чтение файла: {}", inputFilePath);
         FileInputStream fis = new FileInputStream(inputFilePath);
-        Workbook workbook = new XSSFWorkbook(fis);
+        Workbook workbook = WorkbookFactory.create(fis);
         Sheet sourceSheet = workbook.getSheet(sourceSheetName);
 
         if (sourceSheet == null) {
@@ -79,8 +81,7 @@ public class GroupRowsByPositionAndCount {
         for (int rowIndex = 1; rowIndex <= sourceSheet.getLastRowNum(); rowIndex++) {
             Row row = sourceSheet.getRow(rowIndex);
             if (row != null) {
-                Cell cell = row.getCell(groupingColumnIndex);
-                String key = cell.getStringCellValue();
+                String key = CellValues.asString(row.getCell(groupingColumnIndex));
                 groupedRows.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
             }
         }
@@ -160,4 +161,134 @@ public class GroupRowsByPositionAndCount {
         totalCountValueCell.setCellValue(sourceSheet.getLastRowNum());
         logger.info("Общее количество записей: {}", sourceSheet.getLastRowNum());
     }
+
+    /**
+     * Группирует строки таблицы в памяти и записывает результат на новый лист рабочей книги.
+     * Формат результата совпадает с {@link #groupAndCountRows(Sheet, Workbook, String, String)}.
+     *
+     * @param source             Таблица, по которой выполняется группировка.
+     * @param workbook           Рабочая книга Excel для записи результата.
+     * @param targetSheetName    Имя листа, на который будут записаны результаты группировки.
+     * @param groupingColumnName Имя столбца, по которому будет происходить группировка.
+     */
+    public static void groupAndCountRows(TableView source, Workbook workbook, String targetSheetName, String groupingColumnName) {
+        if (source.findColumn(groupingColumnName) == -1) {
+            logger.error("Колонка '{}' не найдена.", groupingColumnName);
+            return;
+        }
+
+        // Группировка номеров строк по указанной колонке (группы - в порядке первого появления)
+        GroupAggregator.Result groupedRows = GroupAggregator.groupRows(source, groupingColumnName,
+                PARALLEL ? ForkJoinPool.commonPool() : null);
+        logger.info("Строки успешно сгруппированы по колонке '{}'.", groupingColumnName);
+
+        Sheet targetSheet = workbook.createSheet(targetSheetName);
+
+        // Запись строки заголовка
+        String[] header = source.header();
+        Row newHeaderRow = targetSheet.createRow(0);
+        for (int colIndex = 0; colIndex < header.length; colIndex++) {
+            newHeaderRow.createCell(colIndex).setCellValue(header[colIndex]);
+        }
+        newHeaderRow.createCell(header.length).setCellValue("Кол-во");
+
+        int currentRowNum = 1; // Начало со второй строки, так как первая строка - заголовок
+        for (int group = 0; group < groupedRows.rowCount(); group++) {
+            String key = groupedRows.getString(group, 0);
+            IntList rows = groupedRows.rows(group);
+
+            // Добавление заголовка группы
+            targetSheet.createRow(currentRowNum++).createCell(0).setCellValue("Код позиции: " + key);
+
+            // Добавление строк
+            for (int i = 0; i < rows.size(); i++) {
+                ExcelUtils.copyRowData(source, rows.get(i), targetSheet.createRow(currentRowNum++), 0);
+            }
+
+            // Добавление строки с количеством
+            Row countRow = targetSheet.createRow(currentRowNum++);
+            countRow.createCell(0).setCellValue("Кол-во");
+            countRow.createCell(1).setCellValue(rows.size());
+            logger.info("Группа '{}' содержит {} строк.", key, rows.size());
+        }
+
+        // Добавление строки с общим количеством записей в конце таблицы
+        Row totalCountRow = targetSheet.createRow(currentRowNum);
+        totalCountRow.createCell(0).setCellValue("Общее количество записей");
+        totalCountRow.createCell(1).setCellValue(source.rowCount());
+        logger.info("Общее количество записей: {}", source.rowCount());
+    }
+
+    /**
+     * Записывает на новый лист только сводку по группам: строку на группу со значением столбца группировки
+     * и агрегатами, без исходных строк. Строки агрегируются хешированием за один проход по таблице.
+     *
+     * @param source             Таблица, по которой выполняется группировка.
+     * @param workbook           Рабочая книга Excel для записи результата.
+     * @param targetSheetName    Имя листа, на который будет записана сводка.
+     * @param groupingColumnName Имя столбца, по которому будет происходить группировка.
+     * @param aggregates         Агрегаты сводки.
+     */
+    public static void summarizeRows(TableView source, Workbook workbook, String targetSheetName, String groupingColumnName,
+                                     List<GroupAggregator.Aggregate> aggregates) {
+        GroupAggregator.Result summary;
+        try {
+            summary = aggregate(source, groupingColumnName, aggregates);
+        } catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            return;
+        }
+        writeSummary(summary, workbook, targetSheetName);
+    }
+
+    /**
+     * Агрегирует таблицу в памяти параллельно или в текущем потоке в зависимости от {@code datamerge.parallelGrouping}.
+     *
+     * @param source             Таблица.
+     * @param groupingColumnName Имя столбца, по которому будет происходить группировка.
+     * @param aggregates         Агрегаты сводки.
+     * @return Сводка по группам.
+     * @throws IllegalArgumentException Если столбец не найден в заголовке.
+     */
+    static GroupAggregator.Result aggregate(TableView source, String groupingColumnName, List<GroupAggregator.Aggregate> aggregates) {
+        return PARALLEL
+                ? GroupAggregator.aggregate(source, groupingColumnName, aggregates, ForkJoinPool.commonPool())
+                : GroupAggregator.aggregate(source, groupingColumnName, aggregates);
+    }
+
+    /**
+     * Строит сводку по группам для первого листа файла и сохраняет ее в новый файл. Исходный файл читается
+     * потоково, в памяти хранятся только накопители групп.
+     *
+     * @param inputFilePath      Путь к исходному файлу XLS или XLSX.
+     * @param outputFilePath     Путь к файлу результата.
+     * @param groupingColumnName Имя столбца, по которому будет происходить группировка.
+     * @param aggregates         Агрегаты сводки.
+     * @throws IOException Если файл не удалось прочитать или записать.
+     */
+    public static void summarizeFile(String inputFilePath, String outputFilePath, String groupingColumnName,
+                                     List<GroupAggregator.Aggregate> aggregates) throws IOException {
+        GroupAggregator.Result summary = GroupAggregator.aggregate(
+                TableCache.wrap(inputFilePath, true), groupingColumnName, aggregates);
+        Workbook workbook = ExcelUtils.createOutputWorkbook(false, 0);
+        try {
+            writeSummary(summary, workbook, "GroupedData");
+            try (FileOutputStream fileOut = new FileOutputStream(outputFilePath)) {
+                workbook.write(fileOut);
+            }
+            logger.info("Сводка по группам сохранена в файл {}", outputFilePath);
+        } finally {
+            ExcelUtils.closeOutputWorkbook(workbook);
+        }
+    }
+
+    private static void writeSummary(GroupAggregator.Result summary, Workbook workbook, String targetSheetName) {
+        Sheet targetSheet = ExcelUtils.writeSheet(workbook, targetSheetName, summary);
+
+        // Добавление строки с общим количеством записей в конце таблицы
+        Row totalCountRow = targetSheet.createRow(summary.rowCount() + 1);
+        totalCountRow.createCell(0).setCellValue("Общее количество записей");
+        totalCountRow.createCell(1).setCellValue(summary.sourceRows());
+        logger.info("Общее количество записей: {}", summary.sourceRows());
+    }
 }
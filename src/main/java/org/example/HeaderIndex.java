@@ -0,0 +1,161 @@
+package org.example;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Сопоставление заголовков листа набору шаблонов {@link ColumnPairingRules.Matcher}.
+ * <p>
+ * Текстовые шаблоны (точное совпадение, начало и вхождение) компилируются один раз в автомат Ахо-Корасик:
+ * каждый заголовок просматривается за один проход по его символам, независимо от числа шаблонов, а вид
+ * совпадения определяется по позиции найденного вхождения. Регулярные выражения проверяются отдельно,
+ * только пока для них не найден заголовок.
+ */
+class HeaderIndex {
+    private final List<ColumnPairingRules.Matcher> matchers;
+    // Переходы автомата: ключ - (узел << 16) | символ
+    private final Map<Long, Integer> transitions = new HashMap<>();
+    private int[] fail;
+    // Шаблоны, оканчивающиеся в узле (включая найденные по ссылкам неудач)
+    private final List<IntList> outputs = new ArrayList<>();
+    private final int[] patternLengths;
+    private final int[] regexMatchers;
+    private final Pattern[] regexes;
+    private int nodeCount = 1;
+
+    /**
+     * Компилирует шаблоны.
+     *
+     * @param matchers Шаблоны; номер шаблона в списке - номер в результате {@link #resolve(String[])}.
+     */
+    HeaderIndex(List<ColumnPairingRules.Matcher> matchers) {
+        this.matchers = matchers;
+        this.patternLengths = new int[matchers.size()];
+        outputs.add(new IntList());
+        IntList regexIds = new IntList();
+        for (int id = 0; id < matchers.size(); id++) {
+            ColumnPairingRules.Matcher matcher = matchers.get(id);
+            if (matcher.type() == ColumnPairingRules.MatchType.REGEX) {
+                regexIds.add(id);
+            } else {
+                addPattern(matcher.pattern(), id);
+            }
+        }
+        buildFailLinks();
+        regexMatchers = regexIds.toArray();
+        regexes = new Pattern[regexMatchers.length];
+        for (int i = 0; i < regexMatchers.length; i++) {
+            regexes[i] = Pattern.compile(matchers.get(regexMatchers[i]).pattern());
+        }
+    }
+
+    /**
+     * Находит для каждого шаблона первый по порядку подходящий заголовок.
+     *
+     * @param headers Заголовки листа.
+     * @return Индекс заголовка для каждого шаблона или -1, если подходящего заголовка нет.
+     */
+    int[] resolve(String[] headers) {
+        int[] found = new int[matchers.size()];
+        Arrays.fill(found, -1);
+        for (int column = 0; column < headers.length; column++) {
+            String header = headers[column] == null ? "" : headers[column];
+            int node = 0;
+            for (int i = 0; i < header.length(); i++) {
+                node = step(node, header.charAt(i));
+                IntList matched = outputs.get(node);
+                for (int j = 0; j < matched.size(); j++) {
+                    int id = matched.get(j);
+                    if (found[id] == -1 && accepts(id, i + 1 - patternLengths[id], header.length())) {
+                        found[id] = column;
+                    }
+                }
+            }
+            for (int i = 0; i < regexMatchers.length; i++) {
+                int id = regexMatchers[i];
+                if (found[id] == -1 && regexes[i].matcher(header).find()) {
+                    found[id] = column;
+                }
+            }
+        }
+        return found;
+    }
+
+    private boolean accepts(int id, int start, int headerLength) {
+        return switch (matchers.get(id).type()) {
+            case CONTAINS -> true;
+            case PREFIX -> start == 0;
+            case EXACT -> start == 0 && patternLengths[id] == headerLength;
+            case REGEX -> false;
+        };
+    }
+
+    private int step(int node, char c) {
+        while (true) {
+            Integer next = transitions.get(key(node, c));
+            if (next != null) {
+                return next;
+            }
+            if (node == 0) {
+                return 0;
+            }
+            node = fail[node];
+        }
+    }
+
+    private void addPattern(String pattern, int id) {
+        int node = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            long key = key(node, pattern.charAt(i));
+            Integer next = transitions.get(key);
+            if (next == null) {
+                next = nodeCount++;
+                transitions.put(key, next);
+                outputs.add(new IntList());
+            }
+            node = next;
+        }
+        outputs.get(node).add(id);
+        patternLengths[id] = pattern.length();
+    }
+
+    /**
+     * Ссылки неудач строятся обходом в ширину; выходы узла дополняются выходами узла по ссылке неудачи.
+     */
+    private void buildFailLinks() {
+        fail = new int[nodeCount];
+        List<List<long[]>> children = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            children.add(new ArrayList<>());
+        }
+        for (Map.Entry<Long, Integer> entry : transitions.entrySet()) {
+            long key = entry.getKey();
+            children.get((int) (key >>> 16)).add(new long[]{key & 0xFFFF, entry.getValue()});
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (long[] child : children.get(0)) {
+            queue.add((int) child[1]);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (long[] child : children.get(node)) {
+                int target = (int) child[1];
+                fail[target] = node == 0 ? 0 : step(fail[node], (char) child[0]);
+                IntList inherited = outputs.get(fail[target]);
+                for (int i = 0; i < inherited.size(); i++) {
+                    outputs.get(target).add(inherited.get(i));
+                }
+                queue.add(target);
+            }
+        }
+    }
+
+    private static long key(int node, char c) {
+        return ((long) node << 16) | c;
+    }
+}
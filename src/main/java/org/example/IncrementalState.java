@@ -0,0 +1,216 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Состояние предыдущего инкрементального объединения пары файлов: отметки входных файлов (размер и время
+ * изменения), отпечаток настроек объединения, отпечатки строк {@link RowHashIndex} и итог объединения.
+ * Состояние, записанное с другими настройками (ключи, режим соединения, сводка, правила столбцов, режим чтения),
+ * не используется: результат с прежними настройками не соответствует текущим.
+ * <p>
+ * Хранится в двоичном файле рядом с результатом: заголовок из {@value #HEADER_LONGS} чисел {@code long},
+ * затем пары хешей первого и второго файла и текст ключей обоих файлов (длина и байты UTF-8). Файл читается
+ * и пишется одним буфером через {@link FileChannel}, запись идет во временный файл с последующей заменой,
+ * поэтому прерванный запуск не портит состояние.
+ * Файл не отображается в память: отображение удерживало бы его до сборки мусора и на части систем не дало бы
+ * заменить файл в том же запуске.
+ */
+class IncrementalState {
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalState.class);
+    private static final long MAGIC = 0x444d524753544154L; // "DMRGSTAT"
+    private static final int VERSION = 2;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int HEADER_LONGS = 14;
+
+    private final FileStamp stamp1;
+    private final FileStamp stamp2;
+    private final long settings;
+    private final RowHashIndex index1;
+    private final RowHashIndex index2;
+    private final ExcelMerger.MergeResult result;
+
+    IncrementalState(FileStamp stamp1, FileStamp stamp2, long settings, RowHashIndex index1, RowHashIndex index2,
+                     ExcelMerger.MergeResult result) {
+        this.stamp1 = stamp1;
+        this.stamp2 = stamp2;
+        this.settings = settings;
+        this.index1 = index1;
+        this.index2 = index2;
+        this.result = result;
+    }
+
+    /**
+     * Размер и время изменения файла.
+     */
+    record FileStamp(long size, long modified) {
+
+        static FileStamp of(Path file) throws IOException {
+            return new FileStamp(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        }
+    }
+
+    /**
+     * Отпечаток настроек объединения (FNV-1a по символам описания настроек).
+     *
+     * @param description Значения всех настроек, влияющих на результат.
+     * @return Отпечаток.
+     */
+    static long settingsFingerprint(String description) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < description.length(); i++) {
+            hash = (hash ^ description.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Читает состояние предыдущего запуска.
+     *
+     * @param path     Файл состояния.
+     * @param settings Отпечаток текущих настроек {@link #settingsFingerprint(String)}.
+     * @return Состояние или {@code null}, если файла нет, он не читается или записан с другими настройками
+     * (тогда объединение выполняется полностью).
+     */
+    static IncrementalState load(Path path, long settings) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            if (buffer.remaining() < HEADER_LONGS * Long.BYTES || buffer.getLong() != MAGIC || buffer.getLong() != VERSION) {
+                logger.warn("Файл состояния {} имеет неизвестный формат и будет перезаписан", path);
+                return null;
+            }
+            FileStamp stamp1 = new FileStamp(buffer.getLong(), buffer.getLong());
+            FileStamp stamp2 = new FileStamp(buffer.getLong(), buffer.getLong());
+            int size1 = (int) buffer.getLong();
+            int size2 = (int) buffer.getLong();
+            ExcelMerger.MergeResult result = new ExcelMerger.MergeResult((int) buffer.getLong(), (int) buffer.getLong(),
+                    (int) buffer.getLong(), (int) buffer.getLong(), (int) buffer.getLong(), 0, 0);
+            if (buffer.getLong() != settings) {
+                logger.info("Настройки объединения изменились с предыдущего запуска, состояние {} не используется", path);
+                return null;
+            }
+            long entryBytes = (long) (size1 + size2) * 2 * Long.BYTES;
+            if (size1 < 0 || size2 < 0 || buffer.remaining() < entryBytes) {
+                logger.warn("Файл состояния {} поврежден и будет перезаписан", path);
+                return null;
+            }
+            var entries = buffer.asLongBuffer();
+            buffer.position(buffer.position() + (int) entryBytes);
+            String[] keys1 = readKeys(buffer, size1);
+            String[] keys2 = readKeys(buffer, size2);
+            if (keys1 == null || keys2 == null || buffer.hasRemaining()) {
+                logger.warn("Файл состояния {} поврежден и будет перезаписан", path);
+                return null;
+            }
+            RowHashIndex index1 = RowHashIndex.wrap(entries, keys1);
+            entries.position(size1 * 2);
+            RowHashIndex index2 = RowHashIndex.wrap(entries, keys2);
+            return new IncrementalState(stamp1, stamp2, settings, index1, index2, result);
+        } catch (IOException e) {
+            logger.warn("Не удалось прочитать файл состояния {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Читает текст ключей; {@code null}, если данных не хватает.
+     */
+    private static String[] readKeys(ByteBuffer buffer, int size) {
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            if (buffer.remaining() < Integer.BYTES) {
+                return null;
+            }
+            int length = buffer.getInt();
+            if (length < 0 || buffer.remaining() < length) {
+                return null;
+            }
+            keys[i] = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        }
+        return keys;
+    }
+
+    /**
+     * Сохраняет состояние через временный файл.
+     *
+     * @param path Файл состояния.
+     * @throws IOException Если файл не удалось записать.
+     */
+    void save(Path path) throws IOException {
+        int size1 = index1.size();
+        int size2 = index2.size();
+        byte[][] keys = new byte[size1 + size2][];
+        long keyBytes = 0;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (i < size1 ? index1.key(i) : index2.key(i - size1)).getBytes(StandardCharsets.UTF_8);
+            keyBytes += Integer.BYTES + keys[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact((HEADER_LONGS + (size1 + size2) * 2L) * Long.BYTES + keyBytes));
+        buffer.putLong(MAGIC).putLong(VERSION)
+                .putLong(stamp1.size()).putLong(stamp1.modified())
+                .putLong(stamp2.size()).putLong(stamp2.modified())
+                .putLong(size1).putLong(size2)
+                .putLong(result.rowsFile1()).putLong(result.rowsFile2())
+                .putLong(result.matchedRows()).putLong(result.onlyFile1()).putLong(result.onlyFile2())
+                .putLong(settings);
+        var entries = buffer.asLongBuffer();
+        index1.writeTo(entries);
+        index2.writeTo(entries);
+        buffer.position(buffer.position() + entries.position() * Long.BYTES);
+        for (byte[] key : keys) {
+            buffer.putInt(key.length).put(key);
+        }
+        buffer.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Входные файлы не менялись с предыдущего запуска.
+     *
+     * @param current1 Отметка первого файла.
+     * @param current2 Отметка второго файла.
+     * @return {@code true}, если размер и время изменения обоих файлов совпадают.
+     */
+    boolean sameInputs(FileStamp current1, FileStamp current2) {
+        return stamp1.equals(current1) && stamp2.equals(current2);
+    }
+
+    RowHashIndex index1() {
+        return index1;
+    }
+
+    RowHashIndex index2() {
+        return index2;
+    }
+
+    ExcelMerger.MergeResult result() {
+        return result;
+    }
+}
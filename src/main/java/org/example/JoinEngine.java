@@ -0,0 +1,218 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Параллельное соединение двух таблиц по ключу.
+ * <p>
+ * Ключи обеих таблиц разбиваются на секции по хешу, и каждая секция соединяется отдельной задачей
+ * в {@link ForkJoinPool}: строится хеш-таблица ключей правой таблицы секции и по ней проверяются ключи
+ * левой. Ключи сравниваются по 64-битному хешу и закодированным байтам {@link KeyEncoder} без создания
+ * строк. Задачи пишут только в свои позиции общих массивов, поэтому синхронизация не нужна. Итоговые
+ * списки собираются последовательно в порядке ключей, так что результат не зависит от числа потоков.
+ */
+public class JoinEngine {
+    private static final Logger logger = LoggerFactory.getLogger(JoinEngine.class);
+    // При меньшем числе ключей соединение выполняется одной задачей
+    private static final int PARALLEL_THRESHOLD = 10_000;
+
+    /**
+     * Результат соединения: номера строк исходных таблиц. Строка повторяющегося ключа входит в пару
+     * с каждой строкой того же ключа другой таблицы, кроме режима {@link JoinMode#POSITIONAL}.
+     *
+     * @param leftMatched  Строки левой таблицы из совпавших пар.
+     * @param rightMatched Строки правой таблицы из совпавших пар (той же длины, что и {@code leftMatched}).
+     * @param leftOnly     Строки левой таблицы без пары.
+     * @param rightOnly    Строки правой таблицы без пары.
+     */
+    public record JoinResult(int[] leftMatched, int[] rightMatched, int[] leftOnly, int[] rightOnly) {
+    }
+
+    /**
+     * Соединяет таблицы в режиме {@link JoinMode#FULL_OUTER} в общем пуле {@link ForkJoinPool#commonPool()}.
+     *
+     * @param left  Левая таблица.
+     * @param right Правая таблица.
+     * @return Результат соединения.
+     */
+    public static JoinResult join(ColumnarTable left, ColumnarTable right) {
+        return join(left, right, JoinMode.FULL_OUTER, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Соединяет таблицы в указанном режиме и пуле.
+     * Пары и строки левой таблицы упорядочены по первому появлению ключа в левой таблице,
+     * строки правой таблицы без пары - по первому появлению ключа в правой; строки одного ключа -
+     * по возрастанию номеров.
+     *
+     * @param left  Левая таблица.
+     * @param right Правая таблица.
+     * @param mode  Режим соединения.
+     * @param pool  Пул для выполнения задач.
+     * @return Результат соединения.
+     */
+    public static JoinResult join(ColumnarTable left, ColumnarTable right, JoinMode mode, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        KeyIndex leftIndex = left.keyIndex();
+        KeyIndex rightIndex = right.keyIndex();
+
+        int partitionCount = leftIndex.keyCount() + rightIndex.keyCount() < PARALLEL_THRESHOLD
+                ? 1 : Integer.highestOneBit(pool.getParallelism() * 4 - 1) << 1;
+        int[][] leftPartitions = partition(leftIndex, partitionCount);
+        int[][] rightPartitions = partition(rightIndex, partitionCount);
+
+        // Для ключа левой таблицы - номер того же ключа в правой или -1
+        int[] leftMatch = new int[leftIndex.keyCount()];
+        boolean[] rightHasMatch = new boolean[rightIndex.keyCount()];
+        pool.invoke(new PartitionJoinTask(leftIndex, rightIndex, leftPartitions, rightPartitions,
+                leftMatch, rightHasMatch, 0, partitionCount));
+
+        boolean keepLeft = mode != JoinMode.INNER;
+        boolean keepRight = mode == JoinMode.FULL_OUTER || mode == JoinMode.POSITIONAL;
+        // Для совпавшего ключа правой таблицы - первая строка, которой не хватило пары при сопоставлении
+        // по порядку, или -1
+        int[] rightRest = new int[rightIndex.keyCount()];
+        Arrays.fill(rightRest, -1);
+        IntList leftMatched = new IntList(leftIndex.keyCount());
+        IntList rightMatched = new IntList(leftIndex.keyCount());
+        IntList leftOnly = new IntList();
+        IntList rightOnly = new IntList();
+        for (int keyId = 0; keyId < leftIndex.keyCount(); keyId++) {
+            int rightKeyId = leftMatch[keyId];
+            if (rightKeyId == -1) {
+                if (keepLeft) {
+                    addRows(leftIndex, leftIndex.firstRow(keyId), leftOnly);
+                }
+            } else if (mode != JoinMode.POSITIONAL) {
+                for (int leftRow = leftIndex.firstRow(keyId); leftRow != -1; leftRow = leftIndex.nextRow(leftRow)) {
+                    for (int rightRow = rightIndex.firstRow(rightKeyId); rightRow != -1; rightRow = rightIndex.nextRow(rightRow)) {
+                        leftMatched.add(leftRow);
+                        rightMatched.add(rightRow);
+                    }
+                }
+            } else {
+                // Строки одного ключа сопоставляются по порядку, остаток остается без пары
+                int leftRow = leftIndex.firstRow(keyId);
+                int rightRow = rightIndex.firstRow(rightKeyId);
+                while (leftRow != -1 && rightRow != -1) {
+                    leftMatched.add(leftRow);
+                    rightMatched.add(rightRow);
+                    leftRow = leftIndex.nextRow(leftRow);
+                    rightRow = rightIndex.nextRow(rightRow);
+                }
+                if (keepLeft) {
+                    addRows(leftIndex, leftRow, leftOnly);
+                }
+                rightRest[rightKeyId] = rightRow;
+            }
+        }
+        if (keepRight) {
+            for (int keyId = 0; keyId < rightIndex.keyCount(); keyId++) {
+                addRows(rightIndex, rightHasMatch[keyId] ? rightRest[keyId] : rightIndex.firstRow(keyId), rightOnly);
+            }
+        }
+        logger.info("Соединение {} выполнено за {} мс ({} секций)", mode, (System.nanoTime() - start) / 1_000_000, partitionCount);
+        return new JoinResult(leftMatched.toArray(), rightMatched.toArray(), leftOnly.toArray(), rightOnly.toArray());
+    }
+
+    /**
+     * Добавляет строки ключа, начиная с указанной, в список.
+     */
+    private static void addRows(KeyIndex index, int fromRow, IntList target) {
+        for (int row = fromRow; row != -1; row = index.nextRow(row)) {
+            target.add(row);
+        }
+    }
+
+    /**
+     * Раскладывает номера ключей по секциям с сохранением порядка внутри секции.
+     */
+    private static int[][] partition(KeyIndex index, int partitionCount) {
+        int mask = partitionCount - 1;
+        int keyCount = index.keyCount();
+        int[] sizes = new int[partitionCount];
+        for (int keyId = 0; keyId < keyCount; keyId++) {
+            sizes[partitionOf(index.hash(keyId), mask)]++;
+        }
+        int[][] partitions = new int[partitionCount][];
+        for (int p = 0; p < partitionCount; p++) {
+            partitions[p] = new int[sizes[p]];
+        }
+        int[] fill = new int[partitionCount];
+        for (int keyId = 0; keyId < keyCount; keyId++) {
+            int p = partitionOf(index.hash(keyId), mask);
+            partitions[p][fill[p]++] = keyId;
+        }
+        return partitions;
+    }
+
+    /**
+     * Номер секции по старшим битам хеша; младшие биты используются хеш-таблицей внутри секции.
+     */
+    private static int partitionOf(long hash, int mask) {
+        return (int) (hash >>> 40) & mask;
+    }
+
+    /**
+     * Соединяет диапазон секций, рекурсивно деля его пополам.
+     */
+    private static class PartitionJoinTask extends RecursiveAction {
+        private final KeyIndex leftIndex;
+        private final KeyIndex rightIndex;
+        private final int[][] leftPartitions;
+        private final int[][] rightPartitions;
+        private final int[] leftMatch;
+        private final boolean[] rightHasMatch;
+        private final int from;
+        private final int to;
+
+        PartitionJoinTask(KeyIndex leftIndex, KeyIndex rightIndex, int[][] leftPartitions, int[][] rightPartitions,
+                          int[] leftMatch, boolean[] rightHasMatch, int from, int to) {
+            this.leftIndex = leftIndex;
+            this.rightIndex = rightIndex;
+            this.leftPartitions = leftPartitions;
+            this.rightPartitions = rightPartitions;
+            this.leftMatch = leftMatch;
+            this.rightHasMatch = rightHasMatch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PartitionJoinTask(leftIndex, rightIndex, leftPartitions, rightPartitions, leftMatch, rightHasMatch, from, middle),
+                        new PartitionJoinTask(leftIndex, rightIndex, leftPartitions, rightPartitions, leftMatch, rightHasMatch, middle, to));
+                return;
+            }
+            int[] rightKeys = rightPartitions[from];
+            // Открытая адресация: номер ключа правой таблицы + 1; 0 - пустая ячейка
+            int[] slots = new int[Integer.highestOneBit(Math.max(rightKeys.length, 1) * 2) << 1];
+            int mask = slots.length - 1;
+            for (int keyId : rightKeys) {
+                int slot = (int) rightIndex.hash(keyId) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = keyId + 1;
+            }
+            for (int keyId : leftPartitions[from]) {
+                int match = -1;
+                for (int slot = (int) leftIndex.hash(keyId) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                    if (rightIndex.sameKey(slots[slot] - 1, leftIndex, keyId)) {
+                        match = slots[slot] - 1;
+                        rightHasMatch[match] = true;
+                        break;
+                    }
+                }
+                leftMatch[keyId] = match;
+            }
+        }
+    }
+}
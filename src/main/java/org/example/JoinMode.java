@@ -0,0 +1,28 @@
+package org.example;
+
+/**
+ * Режим соединения таблиц по ключу с учетом повторяющихся ключей.
+ * <p>
+ * В режимах {@link #INNER}, {@link #LEFT} и {@link #FULL_OUTER} каждая строка ключа слева образует пару
+ * с каждой строкой того же ключа справа (один ко многим и многие ко многим). Несовпавшими считаются
+ * только строки ключей, отсутствующих в другой таблице.
+ */
+public enum JoinMode {
+    /**
+     * Только совпавшие пары.
+     */
+    INNER,
+    /**
+     * Совпавшие пары и строки левой таблицы, ключа которых нет в правой.
+     */
+    LEFT,
+    /**
+     * Совпавшие пары и строки обеих таблиц, ключа которых нет в другой таблице.
+     */
+    FULL_OUTER,
+    /**
+     * Как {@link #FULL_OUTER}, но строки одного ключа сопоставляются по порядку: i-я строка ключа слева
+     * с i-й строкой ключа справа. Строки, которым не хватило пары, считаются несовпавшими.
+     */
+    POSITIONAL
+}
@@ -0,0 +1,82 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Различия в формате JSON Lines, например:
+ * <pre>
+ * {"kind":"removed","key":"K1"}
+ * {"kind":"changed","key":"K2","changes":[{"column":4,"header":"Цена","value1":10.5,"value2":11.0}]}
+ * </pre>
+ */
+class JsonLinesDiffSink extends ChannelDiffSink {
+
+    JsonLinesDiffSink(Path file, ColumnarTable table1, ColumnarTable table2) throws IOException {
+        super(file, table1, table2);
+    }
+
+    @Override
+    protected void format(DiffEngine.Difference difference, StringBuilder record) {
+        String kind = switch (difference.kind()) {
+            case MISSING -> "removed";
+            case ADDED -> "added";
+            case CHANGED -> "changed";
+        };
+        record.append("{\"kind\":\"").append(kind).append("\",\"key\":");
+        appendString(record, key(difference));
+        if (difference.kind() == DiffEngine.Kind.CHANGED) {
+            record.append(",\"changes\":[");
+            int[] columns = difference.columns();
+            for (int i = 0; i < columns.length; i++) {
+                int column = columns[i];
+                record.append(i > 0 ? ",{" : "{").append("\"column\":").append(column).append(",\"header\":");
+                appendString(record, header(column));
+                record.append(",\"value1\":");
+                appendValue(record, table1, difference.row1(), column);
+                record.append(",\"value2\":");
+                appendValue(record, table2, difference.row2(), column);
+                record.append('}');
+            }
+            record.append(']');
+        }
+        record.append("}\n");
+    }
+
+    /**
+     * Значение ячейки с типом JSON: даты - строкой в том же виде, что и в остальных результатах.
+     */
+    private static void appendValue(StringBuilder record, ColumnarTable table, int row, int column) {
+        if (table.isBlank(row, column)) {
+            record.append("null");
+        } else if (table.isBoolean(row, column)) {
+            record.append(table.getBoolean(row, column));
+        } else if (table.isNumeric(row, column) && !table.isDate(row, column) && Double.isFinite(table.getNumber(row, column))) {
+            record.append(table.getNumber(row, column));
+        } else {
+            appendString(record, table.getString(row, column));
+        }
+    }
+
+    private static void appendString(StringBuilder record, String value) {
+        record.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> record.append("\\\"");
+                case '\\' -> record.append("\\\\");
+                case '\n' -> record.append("\\n");
+                case '\r' -> record.append("\\r");
+                case '\t' -> record.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        record.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        record.append(c);
+                    }
+                }
+            }
+        }
+        record.append('"');
+    }
+}
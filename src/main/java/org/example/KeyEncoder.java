@@ -0,0 +1,187 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Кодирует ключ строки по {@link KeySpec} в массив байт и вычисляет его 64-битный хеш.
+ * <p>
+ * Каждая колонка ключа записывается как длина и символы UTF-16 нормализованного текстового значения,
+ * поэтому составные ключи {@code ("ab", "c")} и {@code ("a", "bc")} различаются. Строковые значения
+ * читаются посимвольно без создания промежуточных строк; целые числа записываются цифрами напрямую.
+ * Буфер переиспользуется между вызовами, поэтому экземпляр не потокобезопасен.
+ */
+public class KeyEncoder {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final KeySpec spec;
+    private byte[] buffer = new byte[64];
+    private int length;
+    private long hash;
+    private final char[] digits = new char[20];
+
+    public KeyEncoder(KeySpec spec) {
+        this.spec = spec;
+    }
+
+    public KeySpec spec() {
+        return spec;
+    }
+
+    /**
+     * Кодирует ключ строки колоночной таблицы.
+     *
+     * @param table Таблица.
+     * @param row   Номер строки.
+     * @return Этот кодировщик с результатом в {@link #buffer()}.
+     */
+    public KeyEncoder encode(ColumnarTable table, int row) {
+        reset();
+        for (int i = 0; i < spec.columnCount(); i++) {
+            int column = spec.columnAt(i);
+            if (table.isBlank(row, column)) {
+                appendText("");
+            } else if (table.isDate(row, column) || table.isBoolean(row, column)) {
+                appendText(table.getString(row, column));
+            } else if (table.isNumeric(row, column)) {
+                appendNumber(table.getNumber(row, column));
+            } else {
+                appendText(table.getString(row, column));
+            }
+        }
+        finish();
+        return this;
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * Восстанавливает текстовое представление закодированного ключа (для журнала и отчетов).
+     *
+     * @param bytes  Массив с ключом.
+     * @param offset Начало ключа.
+     * @param length Длина ключа.
+     * @return Значения колонок ключа через " | ".
+     */
+    public static String decode(byte[] bytes, int offset, int length) {
+        StringBuilder result = new StringBuilder();
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
+            if (position > offset) {
+                result.append(" | ");
+            }
+            int chars = readInt(bytes, position);
+            position += 4;
+            for (int i = 0; i < chars; i++) {
+                result.append((char) (((bytes[position] & 0xFF) << 8) | (bytes[position + 1] & 0xFF)));
+                position += 2;
+            }
+        }
+        return result.toString();
+    }
+
+    private void reset() {
+        length = 0;
+        hash = FNV_OFFSET;
+    }
+
+    private void finish() {
+        // Перемешивание битов, чтобы младшие и старшие разряды хеша были равномерны
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        hash = h;
+    }
+
+    private void appendText(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        if (spec.trim()) {
+            while (start < end && isSpace(text.charAt(start))) {
+                start++;
+            }
+            while (end > start && isSpace(text.charAt(end - 1))) {
+                end--;
+            }
+        }
+        appendLength(end - start);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            appendChar(spec.ignoreCase() ? Character.toLowerCase(c) : c);
+        }
+    }
+
+    private void appendNumber(double value) {
+        long integral = (long) value;
+        if (spec.normalizeNumbers() && integral == value && Math.abs(value) < 1e15) {
+            int count = 0;
+            long rest = Math.abs(integral);
+            do {
+                digits[count++] = (char) ('0' + rest % 10);
+                rest /= 10;
+            } while (rest != 0);
+            boolean negative = integral < 0;
+            appendLength(count + (negative ? 1 : 0));
+            if (negative) {
+                appendChar('-');
+            }
+            for (int i = count - 1; i >= 0; i--) {
+                appendChar(digits[i]);
+            }
+        } else {
+            String text = Double.toString(value);
+            appendLength(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                appendChar(text.charAt(i));
+            }
+        }
+    }
+
+    private void appendLength(int value) {
+        ensureCapacity(4);
+        appendByte((byte) (value >>> 24));
+        appendByte((byte) (value >>> 16));
+        appendByte((byte) (value >>> 8));
+        appendByte((byte) value);
+    }
+
+    private void appendChar(char c) {
+        ensureCapacity(2);
+        appendByte((byte) (c >>> 8));
+        appendByte((byte) c);
+    }
+
+    private void appendByte(byte b) {
+        buffer[length++] = b;
+        hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(length + extra, buffer.length * 2));
+        }
+    }
+
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || c == '\u00A0';
+    }
+
+    private static int readInt(byte[] bytes, int position) {
+        return ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+                | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+    }
+}
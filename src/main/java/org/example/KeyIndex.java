@@ -0,0 +1,213 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Индекс строк по ключу с поддержкой повторяющихся ключей.
+ * <p>
+ * Каждому различному ключу назначается номер в порядке первого появления. Ключи хранятся в виде,
+ * закодированном {@link KeyEncoder}, в одном общем массиве байт, а строки одного ключа связаны
+ * в цепочку через массив {@code nextRows}, поэтому для ключа с одной строкой не создается
+ * ни списка, ни строки, ни упакованных чисел. Поиск - открытая адресация по 64-битному хешу ключа.
+ * Строки должны добавляться в порядке возрастания номеров.
+ */
+public class KeyIndex {
+    private byte[] keyBytes = new byte[1024];
+    private int keyBytesLength;
+    private int[] keyOffsets = new int[17];
+    private long[] hashes = new long[16];
+    private int[] firstRows = new int[16];
+    private int[] lastRows = new int[16];
+    private int[] counts = new int[16];
+    private int[] nextRows = new int[16];
+    // Номер ключа + 1; 0 - пустая ячейка
+    private int[] slots = new int[32];
+    private int keyCount;
+
+    /**
+     * Добавляет строку с ключом, закодированным последним вызовом {@code encoder.encode(...)}.
+     *
+     * @param encoder Кодировщик с закодированным ключом.
+     * @param row     Номер строки (больше всех ранее добавленных).
+     * @return Номер ключа.
+     */
+    public int add(KeyEncoder encoder, int row) {
+        if (row >= nextRows.length) {
+            nextRows = Arrays.copyOf(nextRows, Math.max(row + 1, nextRows.length * 2));
+        }
+        nextRows[row] = -1;
+
+        long hash = encoder.hash();
+        int mask = slots.length - 1;
+        int slot = (int) hash & mask;
+        while (slots[slot] != 0) {
+            int keyId = slots[slot] - 1;
+            if (hashes[keyId] == hash && keyEquals(keyId, encoder.buffer(), 0, encoder.length())) {
+                nextRows[lastRows[keyId]] = row;
+                lastRows[keyId] = row;
+                counts[keyId]++;
+                return keyId;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int keyId = keyCount++;
+        if (keyId == hashes.length) {
+            int size = hashes.length * 2;
+            keyOffsets = Arrays.copyOf(keyOffsets, size + 1);
+            hashes = Arrays.copyOf(hashes, size);
+            firstRows = Arrays.copyOf(firstRows, size);
+            lastRows = Arrays.copyOf(lastRows, size);
+            counts = Arrays.copyOf(counts, size);
+        }
+        if (keyBytesLength + encoder.length() > keyBytes.length) {
+            keyBytes = Arrays.copyOf(keyBytes, Math.max(keyBytesLength + encoder.length(), keyBytes.length * 2));
+        }
+        System.arraycopy(encoder.buffer(), 0, keyBytes, keyBytesLength, encoder.length());
+        keyBytesLength += encoder.length();
+        keyOffsets[keyId + 1] = keyBytesLength;
+        hashes[keyId] = hash;
+        firstRows[keyId] = row;
+        lastRows[keyId] = row;
+        counts[keyId] = 1;
+        slots[slot] = keyId + 1;
+        if (keyCount * 2 > slots.length) {
+            rehash();
+        }
+        return keyId;
+    }
+
+    /**
+     * Ищет ключ, закодированный последним вызовом {@code encoder.encode(...)}.
+     *
+     * @param encoder Кодировщик с закодированным ключом.
+     * @return Номер ключа или -1, если ключ отсутствует.
+     */
+    public int find(KeyEncoder encoder) {
+        return find(encoder.buffer(), 0, encoder.length(), encoder.hash());
+    }
+
+    /**
+     * Ищет ключ другого индекса (закодированный по совместимому {@link KeySpec}).
+     *
+     * @param other      Другой индекс.
+     * @param otherKeyId Номер ключа в другом индексе.
+     * @return Номер ключа в этом индексе или -1, если ключ отсутствует.
+     */
+    public int find(KeyIndex other, int otherKeyId) {
+        int offset = other.keyOffsets[otherKeyId];
+        return find(other.keyBytes, offset, other.keyOffsets[otherKeyId + 1] - offset, other.hashes[otherKeyId]);
+    }
+
+    /**
+     * Сравнивает ключ этого индекса с ключом другого индекса побайтно.
+     *
+     * @param keyId      Номер ключа в этом индексе.
+     * @param other      Другой индекс.
+     * @param otherKeyId Номер ключа в другом индексе.
+     * @return {@code true}, если ключи совпадают.
+     */
+    public boolean sameKey(int keyId, KeyIndex other, int otherKeyId) {
+        int offset = other.keyOffsets[otherKeyId];
+        return hashes[keyId] == other.hashes[otherKeyId]
+                && keyEquals(keyId, other.keyBytes, offset, other.keyOffsets[otherKeyId + 1] - offset);
+    }
+
+    private int find(byte[] bytes, int offset, int length, long hash) {
+        int mask = slots.length - 1;
+        for (int slot = (int) hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int keyId = slots[slot] - 1;
+            if (hashes[keyId] == hash && keyEquals(keyId, bytes, offset, length)) {
+                return keyId;
+            }
+        }
+        return -1;
+    }
+
+    public int keyCount() {
+        return keyCount;
+    }
+
+    /**
+     * Возвращает текстовое представление ключа. Создает новую строку, поэтому предназначен для журнала и отчетов.
+     *
+     * @param keyId Номер ключа.
+     * @return Значения колонок ключа.
+     */
+    public String key(int keyId) {
+        return KeyEncoder.decode(keyBytes, keyOffsets[keyId], keyOffsets[keyId + 1] - keyOffsets[keyId]);
+    }
+
+    /**
+     * Возвращает 64-битный хеш ключа.
+     *
+     * @param keyId Номер ключа.
+     * @return Хеш ключа.
+     */
+    public long hash(int keyId) {
+        return hashes[keyId];
+    }
+
+    /**
+     * Возвращает количество строк с ключом.
+     *
+     * @param keyId Номер ключа.
+     * @return Количество строк.
+     */
+    public int rowCount(int keyId) {
+        return counts[keyId];
+    }
+
+    /**
+     * Возвращает первую строку ключа. Остальные строки перебираются через {@link #nextRow(int)}.
+     *
+     * @param keyId Номер ключа.
+     * @return Номер первой строки.
+     */
+    public int firstRow(int keyId) {
+        return firstRows[keyId];
+    }
+
+    /**
+     * Возвращает следующую строку с тем же ключом.
+     *
+     * @param row Номер строки.
+     * @return Номер следующей строки или -1, если строк больше нет.
+     */
+    public int nextRow(int row) {
+        return nextRows[row];
+    }
+
+    /**
+     * Возвращает все строки ключа по возрастанию.
+     *
+     * @param keyId Номер ключа.
+     * @return Номера строк.
+     */
+    public int[] rows(int keyId) {
+        int[] rows = new int[counts[keyId]];
+        int i = 0;
+        for (int row = firstRows[keyId]; row != -1; row = nextRows[row]) {
+            rows[i++] = row;
+        }
+        return rows;
+    }
+
+    private boolean keyEquals(int keyId, byte[] bytes, int offset, int length) {
+        int start = keyOffsets[keyId];
+        return keyOffsets[keyId + 1] - start == length
+                && Arrays.equals(keyBytes, start, start + length, bytes, offset, offset + length);
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int keyId = 0; keyId < keyCount; keyId++) {
+            int slot = (int) hashes[keyId] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = keyId + 1;
+        }
+    }
+}
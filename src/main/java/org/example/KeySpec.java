@@ -0,0 +1,75 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Описание ключа соединения: одна или несколько колонок и правила нормализации значений.
+ *
+ * @param columns          Индексы ключевых колонок в порядке сравнения.
+ * @param trim             Убирать пробельные символы в начале и конце строковых значений.
+ * @param ignoreCase       Сравнивать строковые значения без учета регистра.
+ * @param normalizeNumbers Записывать целые числа без дробной части ({@code 12345}, а не {@code 12345.0}),
+ *                         чтобы числовой код совпадал с тем же кодом, сохраненным как текст.
+ */
+public record KeySpec(int[] columns, boolean trim, boolean ignoreCase, boolean normalizeNumbers) {
+
+    public KeySpec {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("Ключ должен содержать хотя бы одну колонку.");
+        }
+        columns = columns.clone();
+    }
+
+    /**
+     * Ключ из одной колонки без нормализации: значения сравниваются так же,
+     * как строки {@link CellValues#asString}.
+     *
+     * @param column Индекс ключевой колонки.
+     * @return Описание ключа.
+     */
+    public static KeySpec column(int column) {
+        return new KeySpec(new int[]{column}, false, false, false);
+    }
+
+    /**
+     * Разбирает список колонок вида {@code "3"} или {@code "3,5"}.
+     *
+     * @param columns    Индексы колонок через запятую.
+     * @param ignoreCase Сравнивать строковые значения без учета регистра.
+     * @return Описание ключа с обрезкой пробелов и нормализацией чисел.
+     */
+    public static KeySpec parse(String columns, boolean ignoreCase) {
+        int[] indexes = Arrays.stream(columns.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+        return new KeySpec(indexes, true, ignoreCase, true);
+    }
+
+    @Override
+    public int[] columns() {
+        return columns.clone();
+    }
+
+    int columnAt(int i) {
+        return columns[i];
+    }
+
+    int columnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof KeySpec other && Arrays.equals(columns, other.columns) && trim == other.trim
+                && ignoreCase == other.ignoreCase && normalizeNumbers == other.normalizeNumbers;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(columns) * 31 + (trim ? 4 : 0) + (ignoreCase ? 2 : 0) + (normalizeNumbers ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "KeySpec" + Arrays.toString(columns) + (trim ? " trim" : "") + (ignoreCase ? " ignoreCase" : "")
+                + (normalizeNumbers ? " normalizeNumbers" : "");
+    }
+}
@@ -0,0 +1,195 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Конвейер объединения двух таблиц: объединение, сортировка столбцов и группировка выполняются
+ * в памяти над одним набором данных, а результат записывается в файл один раз.
+ * <p>
+ * Этапы не копируют значения: каждый лист результата - это {@link TableView} поверх загруженных
+ * {@link ColumnarTable}. Листы записываются в порядке добавления, листы группировки - после них.
+ */
+public class MergePipeline {
+    private static final Logger logger = LoggerFactory.getLogger(MergePipeline.class);
+    private static final int DEFAULT_COLUMN_WIDTH = 20; // Ширина строки
+
+    public static final String MERGED_SHEET = "MergedData";
+    public static final String UNMATCHED_SHEET_1 = "UnmatchedDataFromFile1";
+    public static final String UNMATCHED_SHEET_2 = "UnmatchedDataFromFile2";
+    public static final String SORTED_SHEET = "SortedData";
+
+    private final ColumnarTable table1;
+    private final ColumnarTable table2;
+    private final Map<String, TableView> sheets = new LinkedHashMap<>();
+    private final List<Grouping> groupings = new ArrayList<>();
+
+    public MergePipeline(ColumnarTable table1, ColumnarTable table2) {
+        this.table1 = table1;
+        this.table2 = table2;
+    }
+
+    /**
+     * Объединяет строки по ключу через {@link JoinEngine}: совпавшие пары - на лист {@value #MERGED_SHEET},
+     * строки только из одного файла - на листы {@value #UNMATCHED_SHEET_1} и {@value #UNMATCHED_SHEET_2}.
+     *
+     * @param mode Режим соединения для повторяющихся и отсутствующих ключей.
+     * @return Этот конвейер.
+     */
+    public MergePipeline merge(JoinMode mode) {
+        JoinEngine.JoinResult join = JoinEngine.join(table1, table2, mode, ForkJoinPool.commonPool());
+
+        String[] header = ExcelUtils.mergedHeader(table1.header(), table2.header());
+        sheets.put(MERGED_SHEET, TableViews.joined(table1, table2, join.leftMatched(), join.rightMatched(), header));
+        sheets.put(UNMATCHED_SHEET_1, TableViews.rows(table1, join.leftOnly()));
+        sheets.put(UNMATCHED_SHEET_2, TableViews.rows(table2, join.rightOnly()));
+        logger.info("Данные объединены: совпало {}, только в file1 {}, только в file2 {}",
+                join.leftMatched().length, join.leftOnly().length, join.rightOnly().length);
+        return this;
+    }
+
+    /**
+     * Переставляет столбцы листа по парам заголовков {@link ColumnPairingRules}.
+     *
+     * @param sourceSheetName Имя исходного листа.
+     * @param targetSheetName Имя листа результата.
+     * @param rules           Правила расположения столбцов.
+     * @return Этот конвейер.
+     */
+    public MergePipeline sortColumns(String sourceSheetName, String targetSheetName, ColumnPairingRules rules) {
+        TableView source = requireSheet(sourceSheetName);
+        int[] order = rules.columnOrder(source.header(), sourceSheetName);
+        sheets.put(targetSheetName, TableViews.columns(source, order));
+        logger.info("Столбцы листа '{}' отсортированы по заголовкам", sourceSheetName);
+        return this;
+    }
+
+    /**
+     * Добавляет произвольный лист результата (например, строки, затронутые изменениями входных файлов).
+     *
+     * @param sheetName Имя листа.
+     * @param sheet     Данные листа.
+     * @return Этот конвейер.
+     */
+    public MergePipeline addSheet(String sheetName, TableView sheet) {
+        sheets.put(sheetName, sheet);
+        return this;
+    }
+
+    /**
+     * Добавляет группировку строк листа по столбцу с подсчетом количества строк в группах.
+     *
+     * @param sourceSheetName    Имя исходного листа.
+     * @param targetSheetName    Имя листа результата.
+     * @param groupingColumnName Имя столбца для группировки.
+     * @return Этот конвейер.
+     */
+    public MergePipeline group(String sourceSheetName, String targetSheetName, String groupingColumnName) {
+        requireSheet(sourceSheetName);
+        groupings.add(new Grouping(sourceSheetName, targetSheetName, groupingColumnName, null));
+        return this;
+    }
+
+    /**
+     * Добавляет сводку по группам строк листа: строку на группу с агрегатами, без исходных строк.
+     * Сводка записывается через {@link GroupRowsByPositionAndCount#summarizeRows} после остальных листов.
+     *
+     * @param sourceSheetName    Имя исходного листа.
+     * @param targetSheetName    Имя листа результата.
+     * @param groupingColumnName Имя столбца для группировки.
+     * @param aggregates         Агрегаты сводки.
+     * @return Этот конвейер.
+     */
+    public MergePipeline summarize(String sourceSheetName, String targetSheetName, String groupingColumnName,
+                                   List<GroupAggregator.Aggregate> aggregates) {
+        requireSheet(sourceSheetName);
+        groupings.add(new Grouping(sourceSheetName, targetSheetName, groupingColumnName, List.copyOf(aggregates)));
+        return this;
+    }
+
+    /**
+     * Возвращает лист результата.
+     *
+     * @param sheetName Имя листа.
+     * @return Данные листа или {@code null}, если лист не создан.
+     */
+    public TableView getSheet(String sheetName) {
+        return sheets.get(sheetName);
+    }
+
+    /**
+     * Записывает все листы в рабочую книгу и сохраняет ее в файл. Рабочая книга закрывается.
+     *
+     * @param workbook   Пустая рабочая книга (XSSF или SXSSF).
+     * @param outputPath Путь к файлу результата.
+     * @throws IOException Если файл не удалось записать.
+     */
+    public void write(Workbook workbook, String outputPath) throws IOException {
+        long start = System.nanoTime();
+        try {
+            // Общий реестр: одинаковые стили всех листов хранятся в книге один раз
+            StyleRegistry styles = new StyleRegistry(workbook);
+            for (Map.Entry<String, TableView> entry : sheets.entrySet()) {
+                Sheet sheet = ExcelUtils.writeSheet(workbook, entry.getKey(), entry.getValue());
+                if (entry.getKey().equals(MERGED_SHEET)) {
+                    styleMergedSheet(styles, sheet, entry.getValue().columnCount());
+                }
+            }
+            for (Grouping grouping : groupings) {
+                TableView source = sheets.get(grouping.sourceSheetName());
+                if (grouping.aggregates() == null) {
+                    GroupRowsByPositionAndCount.groupAndCountRows(source, workbook, grouping.targetSheetName(), grouping.groupingColumnName());
+                } else {
+                    GroupRowsByPositionAndCount.summarizeRows(source, workbook, grouping.targetSheetName(), grouping.groupingColumnName(),
+                            grouping.aggregates());
+                }
+            }
+            try (FileOutputStream fileOut = new FileOutputStream(outputPath)) {
+                workbook.write(fileOut);
+            }
+            logger.info("Результат сохранен в файл {} за {} мс", outputPath, elapsedMillis(start));
+        } finally {
+            ExcelUtils.closeOutputWorkbook(workbook);
+        }
+    }
+
+    private void styleMergedSheet(StyleRegistry styles, Sheet sheet, int columnCount) {
+        // Применение стилей столбцов в зависимости от источника данных
+        ExcelUtils.applyColumnStyles(styles, sheet, 0, table1.columnCount(), "file1");
+        ExcelUtils.applyColumnStyles(styles, sheet, table1.columnCount(), table2.columnCount(), "file2");
+
+        // Установка ширины столбцов
+        for (int i = 0; i < columnCount; i++) {
+            sheet.setColumnWidth(i, DEFAULT_COLUMN_WIDTH * 256); // 256 символов на единицу ширины
+        }
+    }
+
+    /**
+     * Лист группировки: подробная группировка, если агрегаты не заданы, иначе сводка.
+     */
+    private record Grouping(String sourceSheetName, String targetSheetName, String groupingColumnName,
+                            List<GroupAggregator.Aggregate> aggregates) {
+    }
+
+    private TableView requireSheet(String sheetName) {
+        TableView sheet = sheets.get(sheetName);
+        if (sheet == null) {
+            throw new IllegalArgumentException("Лист с именем " + sheetName + " не найден в конвейере.");
+        }
+        return sheet;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Буфер ячеек текущей строки для обработчиков, которым нужна вся строка целиком (агрегация
+ * {@link GroupAggregator}). Значения хранятся в примитивных массивах, переиспользуемых между строками.
+ */
+abstract class RowBuffer implements SheetRowHandler {
+    static final byte BLANK = 0;
+    static final byte STRING = 1;
+    static final byte NUMBER = 2;
+    static final byte DATE = 3;
+    static final byte BOOLEAN = 4;
+
+    private byte[] kinds = new byte[16];
+    private double[] numbers = new double[16];
+    private String[] strings = new String[16];
+    private int width;
+
+    @Override
+    public void startRow(int rowNum) {
+        Arrays.fill(kinds, 0, width, BLANK);
+        Arrays.fill(strings, 0, width, null);
+        width = 0;
+    }
+
+    @Override
+    public void stringCell(int columnIndex, String value) {
+        ensureWidth(columnIndex);
+        kinds[columnIndex] = STRING;
+        strings[columnIndex] = value;
+    }
+
+    @Override
+    public void numericCell(int columnIndex, double value, boolean date) {
+        ensureWidth(columnIndex);
+        kinds[columnIndex] = date ? DATE : NUMBER;
+        numbers[columnIndex] = value;
+    }
+
+    @Override
+    public void booleanCell(int columnIndex, boolean value) {
+        ensureWidth(columnIndex);
+        kinds[columnIndex] = BOOLEAN;
+        numbers[columnIndex] = value ? 1 : 0;
+    }
+
+    /**
+     * Число столбцов текущей строки (индекс последней непустой ячейки + 1).
+     */
+    int width() {
+        return width;
+    }
+
+    byte kind(int column) {
+        return column < width ? kinds[column] : BLANK;
+    }
+
+    /**
+     * Число, дата (номер дня Excel) или логическое значение (1 или 0).
+     */
+    double number(int column) {
+        return numbers[column];
+    }
+
+    String string(int column) {
+        return strings[column];
+    }
+
+    /**
+     * Значение ячейки в виде строки по правилам {@link CellValues}.
+     */
+    String asString(int column) {
+        return switch (kind(column)) {
+            case STRING -> strings[column];
+            case NUMBER -> Double.toString(numbers[column]);
+            case DATE -> CellValues.formatDate(numbers[column]);
+            case BOOLEAN -> numbers[column] != 0 ? "true" : "false";
+            default -> "";
+        };
+    }
+
+    private void ensureWidth(int columnIndex) {
+        if (columnIndex >= kinds.length) {
+            int size = Math.max(columnIndex + 1, kinds.length * 2);
+            kinds = Arrays.copyOf(kinds, size);
+            numbers = Arrays.copyOf(numbers, size);
+            strings = Arrays.copyOf(strings, size);
+        }
+        width = Math.max(width, columnIndex + 1);
+    }
+}
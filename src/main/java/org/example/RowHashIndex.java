@@ -0,0 +1,184 @@
+package org.example;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Отпечаток таблицы для инкрементального объединения: пары (хеш ключа, хеш строк ключа), упорядоченные по хешу ключа.
+ * <p>
+ * Хеш ключа берется из {@link KeyIndex}, хеш строк собирается из отпечатков {@link ColumnarTable#rowHash(int)}
+ * всех строк с этим ключом в порядке файла. На ключ приходится 16 байт, поэтому отпечаток предыдущего запуска
+ * хранится в файле без исходных данных, а сравнение с новым выполняется одним слиянием двух упорядоченных
+ * массивов. Совпадение 64-битных хешей разных ключей или строк считается невозможным. Вместе с хешами хранится
+ * текст ключей, чтобы удаленные с предыдущего запуска ключи можно было перечислить в отчете.
+ */
+public class RowHashIndex {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    // Чередующиеся хеш ключа и хеш строк
+    private final LongBuffer entries;
+    // Текст ключей в порядке пар хешей
+    private final String[] keys;
+    private final int size;
+
+    private RowHashIndex(LongBuffer entries, String[] keys, int size) {
+        this.entries = entries;
+        this.keys = keys;
+        this.size = size;
+    }
+
+    /**
+     * Строит отпечаток загруженной таблицы.
+     *
+     * @param table Таблица с индексом по ключу.
+     * @return Отпечаток таблицы.
+     */
+    public static RowHashIndex build(ColumnarTable table) {
+        KeyIndex keyIndex = table.keyIndex();
+        int size = keyIndex.keyCount();
+        long[] keyHashes = new long[size];
+        long[] rowHashes = new long[size];
+        Integer[] order = new Integer[size];
+        for (int keyId = 0; keyId < size; keyId++) {
+            keyHashes[keyId] = keyIndex.hash(keyId);
+            long hash = FNV_OFFSET;
+            for (int row = keyIndex.firstRow(keyId); row != -1; row = keyIndex.nextRow(row)) {
+                hash = mix(hash, table.rowHash(row));
+            }
+            rowHashes[keyId] = hash;
+            order[keyId] = keyId;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keyHashes[a], keyHashes[b]));
+
+        long[] entries = new long[size * 2];
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            entries[2 * i] = keyHashes[order[i]];
+            entries[2 * i + 1] = rowHashes[order[i]];
+            keys[i] = keyIndex.key(order[i]);
+        }
+        return new RowHashIndex(LongBuffer.wrap(entries), keys, size);
+    }
+
+    /**
+     * Отпечаток поверх ранее сохраненных значений (см. {@link #writeTo(LongBuffer)} и {@link #key(int)}).
+     *
+     * @param entries Буфер с парами хешей, начиная с текущей позиции.
+     * @param keys    Текст ключей в порядке пар.
+     * @return Отпечаток без копирования буфера.
+     */
+    static RowHashIndex wrap(LongBuffer entries, String[] keys) {
+        return new RowHashIndex(entries.slice(entries.position(), keys.length * 2), keys, keys.length);
+    }
+
+    /**
+     * Количество различных ключей.
+     *
+     * @return Число ключей.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Текст ключа по номеру пары хешей.
+     *
+     * @param i Номер пары (от 0 до {@code size() - 1}).
+     * @return Значения колонок ключа.
+     */
+    String key(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Записывает пары хешей в буфер.
+     *
+     * @param target Буфер с местом для {@code 2 * size()} значений.
+     */
+    void writeTo(LongBuffer target) {
+        target.put(entries.duplicate().position(0).limit(size * 2));
+    }
+
+    /**
+     * Сравнивает таблицу с отпечатком предыдущего запуска.
+     *
+     * @param previous Отпечаток предыдущего запуска.
+     * @return Добавленные, удаленные и измененные ключи.
+     */
+    public Delta diff(RowHashIndex previous) {
+        List<String> deletedKeys = new ArrayList<>();
+        long[] affected = new long[16];
+        int affectedCount = 0;
+        int inserted = 0;
+        int deleted = 0;
+        int changed = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < previous.size) {
+            int order = i == size ? 1 : j == previous.size ? -1 : Long.compare(keyHash(i), previous.keyHash(j));
+            long key;
+            if (order < 0) {
+                key = keyHash(i++);
+                inserted++;
+            } else if (order > 0) {
+                deletedKeys.add(previous.key(j));
+                key = previous.keyHash(j++);
+                deleted++;
+            } else {
+                key = keyHash(i);
+                boolean same = rowHash(i++) == previous.rowHash(j++);
+                if (same) {
+                    continue;
+                }
+                changed++;
+            }
+            if (affectedCount == affected.length) {
+                affected = Arrays.copyOf(affected, affectedCount * 2);
+            }
+            affected[affectedCount++] = key;
+        }
+        // Хеши добавляются в порядке слияния, то есть уже упорядочены
+        return new Delta(inserted, deleted, changed, Arrays.copyOf(affected, affectedCount), deletedKeys);
+    }
+
+    private long keyHash(int i) {
+        return entries.get(2 * i);
+    }
+
+    private long rowHash(int i) {
+        return entries.get(2 * i + 1);
+    }
+
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x9e3779b97f4a7c15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Различия таблицы с предыдущим запуском.
+     *
+     * @param inserted     Ключей, которых не было.
+     * @param deleted      Ключей, которые пропали.
+     * @param changed      Ключей с измененными строками.
+     * @param affectedKeys Упорядоченные хеши всех затронутых ключей.
+     * @param deletedKeys  Текст пропавших ключей (в порядке их хешей).
+     */
+    public record Delta(int inserted, int deleted, int changed, long[] affectedKeys, List<String> deletedKeys) {
+
+        public boolean isEmpty() {
+            return affectedKeys.length == 0;
+        }
+
+        /**
+         * Затронут ли ключ изменениями.
+         *
+         * @param keyHash Хеш ключа из {@link KeyIndex#hash(int)}.
+         * @return {@code true}, если ключ добавлен, удален или изменен.
+         */
+        public boolean affects(long keyHash) {
+            return Arrays.binarySearch(affectedKeys, keyHash) >= 0;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Источник строк первого листа, не зависящий от формата файла и способа чтения.
+ * <p>
+ * Потребители (загрузка в {@link ColumnarTable}, сравнение, группировка) получают строки через
+ * {@link SheetRowHandler} и не знают, читается ли XLS или XLSX, потоково или через объектную модель POI,
+ * поэтому файлы XLS не нужно предварительно конвертировать.
+ */
+@FunctionalInterface
+public interface RowSource {
+
+    /**
+     * Передает строки первого листа обработчику.
+     *
+     * @param handler Обработчик строк.
+     * @throws IOException Если источник не удалось прочитать.
+     */
+    void read(SheetRowHandler handler) throws IOException;
+
+    /**
+     * Источник для файла: потоковое чтение или объектная модель POI.
+     *
+     * @param filePath  Путь к файлу XLS или XLSX.
+     * @param streaming Читать файл потоково.
+     * @return Источник строк.
+     */
+    static RowSource of(String filePath, boolean streaming) {
+        return streaming ? streaming(filePath) : workbook(filePath);
+    }
+
+    /**
+     * Потоковое чтение: {@link StreamingXlsReader} для XLS, {@link StreamingSheetReader} для XLSX.
+     *
+     * @param filePath Путь к файлу.
+     * @return Источник строк.
+     */
+    static RowSource streaming(String filePath) {
+        if (filePath.endsWith(".xls")) {
+            return handler -> StreamingXlsReader.readFirstSheet(filePath, handler);
+        } else if (filePath.endsWith(".xlsx")) {
+            return handler -> StreamingSheetReader.readFirstSheet(filePath, handler);
+        }
+        throw new IllegalArgumentException("Неподдерживаемый формат файла: " + filePath);
+    }
+
+    /**
+     * Чтение через объектную модель POI (HSSF или XSSF по содержимому файла). Рабочая книга
+     * закрывается после чтения.
+     *
+     * @param filePath Путь к файлу.
+     * @return Источник строк.
+     */
+    static RowSource workbook(String filePath) {
+        return handler -> {
+            try (Workbook workbook = WorkbookFactory.create(new File(filePath), null, true)) {
+                ExcelUtils.readSheet(workbook.getSheetAt(0), handler);
+            }
+        };
+    }
+
+    /**
+     * Источник для уже открытого листа.
+     *
+     * @param sheet Лист рабочей книги.
+     * @return Источник строк.
+     */
+    static RowSource sheet(Sheet sheet) {
+        return handler -> ExcelUtils.readSheet(sheet, handler);
+    }
+}
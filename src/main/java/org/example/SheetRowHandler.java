@@ -0,0 +1,51 @@
+package org.example;
+
+/**
+ * Обработчик событий построчного чтения листа.
+ * <p>
+ * Источник вызывает {@link #startRow(int)}, затем методы для каждой непустой ячейки строки
+ * и в конце {@link #endRow(int)}. Пустые ячейки не передаются.
+ */
+public interface SheetRowHandler {
+
+    /**
+     * Вызывается перед первой ячейкой строки.
+     *
+     * @param rowNum Номер строки (с нуля).
+     */
+    default void startRow(int rowNum) {
+    }
+
+    /**
+     * Строковая ячейка (в том числе текст формулы).
+     *
+     * @param columnIndex Индекс колонки.
+     * @param value       Значение ячейки.
+     */
+    void stringCell(int columnIndex, String value);
+
+    /**
+     * Числовая ячейка.
+     *
+     * @param columnIndex Индекс колонки.
+     * @param value       Значение ячейки; дата - номер дня в системе дат 1900, даже если книга использует систему 1904.
+     * @param date        {@code true}, если формат ячейки является датой.
+     */
+    void numericCell(int columnIndex, double value, boolean date);
+
+    /**
+     * Логическая ячейка.
+     *
+     * @param columnIndex Индекс колонки.
+     * @param value       Значение ячейки.
+     */
+    void booleanCell(int columnIndex, boolean value);
+
+    /**
+     * Вызывается после последней ячейки строки.
+     *
+     * @param rowNum Номер строки (с нуля).
+     */
+    default void endRow(int rowNum) {
+    }
+}
@@ -0,0 +1,300 @@
+package org.example;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.SharedFormula;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потоковое чтение XLSX файлов через событийный API POI (XSSFReader + SAX).
+ * <p>
+ * Объектная модель XSSF не строится: XML листа разбирается построчно, а значения
+ * передаются в {@link SheetRowHandler}. Потребление памяти не зависит от размера листа
+ * и ограничено таблицей общих строк. Даты книг в системе 1904 передаются в системе дат 1900.
+ * <p>
+ * Для формул, как и при чтении через объектную модель XSSF, передается текст формулы: общие формулы
+ * ({@code t="shared"}) восстанавливаются из основной формулы группы со сдвигом ссылок, ячейки формулы массива
+ * получают текст формулы массива. Если общую формулу разобрать нельзя (например, она ссылается на
+ * именованный диапазон, которого нет вне книги), передается кэшированный результат.
+ */
+public class StreamingSheetReader {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingSheetReader.class);
+    private static final String STOP = "stop";
+
+    /**
+     * Читает первый лист XLSX файла и передает его строки обработчику.
+     *
+     * @param filePath Путь к файлу XLSX.
+     * @param handler  Обработчик строк.
+     * @throws IOException Если файл не удалось прочитать или разобрать.
+     */
+    public static void readFirstSheet(String filePath, SheetRowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(filePath, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            boolean date1904;
+            try (InputStream workbookStream = reader.getWorkbookData()) {
+                date1904 = isDate1904(workbookStream);
+            }
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IOException("В файле нет листов: " + filePath);
+            }
+            try (InputStream sheetStream = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new SheetHandler(strings, styles, date1904, sheets.getSheetName(), handler));
+                parser.parse(new InputSource(sheetStream));
+            }
+            logger.info("Первый лист файла {} прочитан в потоковом режиме.", filePath);
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Ошибка потокового чтения файла " + filePath, e);
+        }
+    }
+
+    /**
+     * Читает признак системы дат 1904 из {@code workbookPr} книги.
+     */
+    private static boolean isDate1904(InputStream workbookStream) throws IOException, SAXException, ParserConfigurationException {
+        boolean[] date1904 = new boolean[1];
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                if (localName.equals("workbookPr")) {
+                    String value = attributes.getValue("date1904");
+                    date1904[0] = "1".equals(value) || "true".equals(value);
+                } else if (localName.equals("sheets")) {
+                    // Свойства книги записываются до списка листов: дальше читать не нужно
+                    throw new SAXException(STOP);
+                }
+            }
+        });
+        try {
+            parser.parse(new InputSource(workbookStream));
+        } catch (SAXException e) {
+            if (!STOP.equals(e.getMessage())) {
+                throw e;
+            }
+        }
+        return date1904[0];
+    }
+
+    /**
+     * SAX обработчик XML листа: элементы {@code row}, {@code c}, {@code v}, {@code f}, {@code is/t}.
+     */
+    private static class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable strings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final String sheetName;
+        private final SheetRowHandler handler;
+        // Основные формулы общих формул по номеру si и формулы массивов листа
+        private final Map<String, SharedMaster> sharedFormulas = new HashMap<>();
+        private final List<SharedMaster> arrayFormulas = new ArrayList<>();
+        private XSSFEvaluationWorkbook formulaBook;
+        private final StringBuilder value = new StringBuilder();
+        private final StringBuilder formula = new StringBuilder();
+
+        private int rowNum = -1;
+        private int columnIndex;
+        private int nextColumnIndex;
+        private String cellType;
+        private int styleIndex;
+        private boolean collectValue;
+        private boolean collectFormula;
+        private boolean hasValue;
+        private String formulaType;
+        private String formulaRef;
+        private String sharedIndex;
+
+        SheetHandler(ReadOnlySharedStringsTable strings, StylesTable styles, boolean date1904, String sheetName,
+                     SheetRowHandler handler) {
+            this.strings = strings;
+            this.styles = styles;
+            this.date1904 = date1904;
+            this.sheetName = sheetName;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row" -> {
+                    String r = attributes.getValue("r");
+                    rowNum = r != null ? Integer.parseInt(r) - 1 : rowNum + 1;
+                    nextColumnIndex = 0;
+                    handler.startRow(rowNum);
+                }
+                case "c" -> {
+                    String ref = attributes.getValue("r");
+                    columnIndex = ref != null ? new CellReference(ref).getCol() : nextColumnIndex;
+                    nextColumnIndex = columnIndex + 1;
+                    cellType = attributes.getValue("t");
+                    String s = attributes.getValue("s");
+                    styleIndex = s != null ? Integer.parseInt(s) : -1;
+                    value.setLength(0);
+                    formula.setLength(0);
+                    hasValue = false;
+                    formulaType = null;
+                    formulaRef = null;
+                    sharedIndex = null;
+                }
+                case "v", "t" -> {
+                    collectValue = true;
+                    hasValue = true;
+                }
+                case "f" -> {
+                    collectFormula = true;
+                    formulaType = attributes.getValue("t");
+                    formulaRef = attributes.getValue("ref");
+                    sharedIndex = attributes.getValue("si");
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> collectValue = false;
+                case "f" -> collectFormula = false;
+                case "c" -> emitCell();
+                case "row" -> handler.endRow(rowNum);
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collectValue) {
+                value.append(ch, start, length);
+            } else if (collectFormula) {
+                formula.append(ch, start, length);
+            }
+        }
+
+        private void emitCell() {
+            // Как и при копировании через usermodel, для формул переносится текст формулы
+            String text = formulaText();
+            if (text != null) {
+                handler.stringCell(columnIndex, text);
+                return;
+            }
+            if (!hasValue) {
+                return;
+            }
+            text = value.toString();
+            if (cellType == null || cellType.equals("n")) {
+                if (!text.isEmpty()) {
+                    boolean date = isDateStyle();
+                    double number = Double.parseDouble(text);
+                    handler.numericCell(columnIndex, date && date1904 ? number + CellValues.DATE1904_OFFSET : number, date);
+                }
+                return;
+            }
+            switch (cellType) {
+                case "s" -> handler.stringCell(columnIndex, strings.getItemAt(Integer.parseInt(text)).getString());
+                case "b" -> handler.booleanCell(columnIndex, text.equals("1"));
+                default -> handler.stringCell(columnIndex, text);
+            }
+        }
+
+        /**
+         * Текст формулы ячейки по правилам {@code XSSFCell.getCellFormula()} или {@code null}, если формулы нет
+         * или общую формулу не удалось восстановить.
+         */
+        private String formulaText() {
+            if ("shared".equals(formulaType) && sharedIndex != null) {
+                if (formulaRef != null && !formula.isEmpty()) {
+                    CellRangeAddress range = CellRangeAddress.valueOf(formulaRef);
+                    sharedFormulas.put(sharedIndex, new SharedMaster(formula.toString(), range));
+                }
+                SharedMaster master = sharedFormulas.get(sharedIndex);
+                return master == null ? null : shiftSharedFormula(master);
+            }
+            if (!formula.isEmpty()) {
+                if ("array".equals(formulaType) && formulaRef != null) {
+                    arrayFormulas.add(new SharedMaster(formula.toString(), CellRangeAddress.valueOf(formulaRef)));
+                }
+                return formula.toString();
+            }
+            for (SharedMaster array : arrayFormulas) {
+                if (array.range().isInRange(rowNum, columnIndex)) {
+                    return array.formula();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Общая формула для текущей ячейки: ссылки основной формулы сдвигаются на смещение ячейки
+         * от начала диапазона группы.
+         */
+        private String shiftSharedFormula(SharedMaster master) {
+            try {
+                if (formulaBook == null) {
+                    // Книга-заглушка с листом того же имени: достаточно для разбора и вывода ссылок
+                    XSSFWorkbook stub = new XSSFWorkbook();
+                    stub.createSheet(sheetName);
+                    formulaBook = XSSFEvaluationWorkbook.create(stub);
+                }
+                Ptg[] tokens = FormulaParser.parse(master.formula(), formulaBook, FormulaType.CELL, 0, rowNum);
+                Ptg[] shifted = new SharedFormula(SpreadsheetVersion.EXCEL2007).convertSharedFormulas(tokens,
+                        rowNum - master.range().getFirstRow(), columnIndex - master.range().getFirstColumn());
+                return FormulaRenderer.toFormulaString(formulaBook, shifted);
+            } catch (RuntimeException e) {
+                logger.warn("Не удалось восстановить общую формулу в ячейке {}: {}",
+                        new CellReference(rowNum, columnIndex).formatAsString(), e.getMessage());
+                return null;
+            }
+        }
+
+        private boolean isDateStyle() {
+            if (styleIndex < 0 || styles == null) {
+                return false;
+            }
+            XSSFCellStyle style = styles.getStyleAt(styleIndex);
+            return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+        }
+    }
+
+    /**
+     * Основная формула общей формулы или формулы массива и ее диапазон.
+     */
+    private record SharedMaster(String formula, CellRangeAddress range) {
+    }
+}
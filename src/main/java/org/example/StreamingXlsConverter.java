@@ -0,0 +1,120 @@
+package org.example;
+
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Потоковая конвертация XLS в XLSX.
+ * <p>
+ * Записи BIFF читаются по одной через {@link HSSFEventFactory} без построения {@code HSSFWorkbook},
+ * а результат пишется через {@link SXSSFWorkbook}, который держит в памяти только окно последних строк
+ * листа. Листы копируются по очереди в порядке их следования в файле, поэтому память ограничена
+ * таблицей общих строк XLS и окном SXSSF и не зависит от числа строк.
+ * <p>
+ * Как и {@link XlsToXlsxConverter}, копируются значения и формулы (текст формулы без кэшированного
+ * результата). Дополнительно сохраняются форматы дат, чтобы даты оставались датами после конвертации.
+ */
+public class StreamingXlsConverter {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingXlsConverter.class);
+
+    /**
+     * Конвертирует файл XLS в XLSX в потоковом режиме.
+     *
+     * @param inputFilePath  Путь к файлу XLS.
+     * @param outputFilePath Путь к создаваемому файлу XLSX.
+     * @throws IOException Если файл не удалось прочитать или записать.
+     */
+    public static void convert(String inputFilePath, String outputFilePath) throws IOException {
+        long start = System.nanoTime();
+        Workbook xlsxWorkbook = ExcelUtils.createOutputWorkbook(true, SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+        try {
+            logger.info("Входной файл XLS открыт для потокового чтения: {}", inputFilePath);
+            new ConvertingReader(xlsxWorkbook).process(inputFilePath);
+
+            try (FileOutputStream fos = new FileOutputStream(outputFilePath)) {
+                xlsxWorkbook.write(fos);
+            }
+            logger.info("Конвертация {} завершена за {} мс", inputFilePath, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            logger.error("Произошла ошибка при конвертации.", e);
+            throw e;
+        } finally {
+            ExcelUtils.closeOutputWorkbook(xlsxWorkbook);
+        }
+    }
+
+    /**
+     * Переносит значения ячеек каждого листа XLS в книгу XLSX.
+     */
+    private static class ConvertingReader extends XlsEventReader {
+        private final Workbook xlsxWorkbook;
+        private final StyleRegistry styles;
+        private Sheet sheet;
+        private int rowCount;
+
+        ConvertingReader(Workbook xlsxWorkbook) {
+            this.xlsxWorkbook = xlsxWorkbook;
+            this.styles = new StyleRegistry(xlsxWorkbook);
+        }
+
+        @Override
+        protected void startSheet(int index, String name) {
+            logger.info("Копирование листа: {}", name);
+            sheet = xlsxWorkbook.createSheet(name);
+            rowCount = 0;
+        }
+
+        @Override
+        protected void endSheet(int index) {
+            logger.info("Лист '{}' скопирован ({} строк)", sheet.getSheetName(), rowCount);
+        }
+
+        @Override
+        protected void stringCell(int row, int column, String value) {
+            createCell(row, column).setCellValue(value);
+        }
+
+        @Override
+        protected void numericCell(int row, int column, double value, String dateFormat) {
+            Cell cell = createCell(row, column);
+            cell.setCellValue(value);
+            if (dateFormat != null) {
+                cell.setCellStyle(styles.dataFormat(dateFormat));
+            }
+        }
+
+        @Override
+        protected void booleanCell(int row, int column, boolean value) {
+            createCell(row, column).setCellValue(value);
+        }
+
+        @Override
+        protected void formulaCell(int row, int column, String formula) {
+            createCell(row, column).setCellFormula(formula);
+        }
+
+        @Override
+        protected void blankCell(int row, int column) {
+            createCell(row, column);
+        }
+
+        private Cell createCell(int rowNum, int column) {
+            // Записи ячеек идут по возрастанию строк, поэтому строка находится в окне SXSSF
+            Row row = sheet.getRow(rowNum);
+            if (row == null) {
+                row = sheet.createRow(rowNum);
+                rowCount++;
+            }
+            return row.createCell(column);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Потоковое чтение XLS файлов через событийный API HSSF.
+ * <p>
+ * Аналог {@link StreamingSheetReader} для формата XLS: записи первого листа передаются
+ * в {@link SheetRowHandler} по мере чтения, после конца листа чтение прекращается.
+ * Промежуточный файл XLSX не создается. Формулы передаются текстом, как в {@link ExcelUtils#readSheet}.
+ */
+public class StreamingXlsReader {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingXlsReader.class);
+
+    /**
+     * Читает первый лист XLS файла и передает его строки обработчику.
+     *
+     * @param filePath Путь к файлу XLS.
+     * @param handler  Обработчик строк.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    public static void readFirstSheet(String filePath, SheetRowHandler handler) throws IOException {
+        new FirstSheetReader(handler).process(filePath);
+        logger.info("Первый лист файла {} прочитан в потоковом режиме.", filePath);
+    }
+
+    /**
+     * Преобразует события ячеек первого листа в события строк.
+     */
+    private static class FirstSheetReader extends XlsEventReader {
+        private final SheetRowHandler handler;
+        private int currentRow = -1;
+
+        FirstSheetReader(SheetRowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        protected void startSheet(int index, String name) {
+        }
+
+        @Override
+        protected void endSheet(int index) {
+            if (currentRow != -1) {
+                handler.endRow(currentRow);
+            }
+            stop();
+        }
+
+        @Override
+        protected void stringCell(int row, int column, String value) {
+            moveTo(row);
+            handler.stringCell(column, value);
+        }
+
+        @Override
+        protected void numericCell(int row, int column, double value, String dateFormat) {
+            moveTo(row);
+            handler.numericCell(column, value, dateFormat != null);
+        }
+
+        @Override
+        protected void booleanCell(int row, int column, boolean value) {
+            moveTo(row);
+            handler.booleanCell(column, value);
+        }
+
+        @Override
+        protected void formulaCell(int row, int column, String formula) {
+            moveTo(row);
+            handler.stringCell(column, formula);
+        }
+
+        private void moveTo(int row) {
+            if (row != currentRow) {
+                if (currentRow != -1) {
+                    handler.endRow(currentRow);
+                }
+                currentRow = row;
+                handler.startRow(row);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Реестр стилей одной рабочей книги.
+ * <p>
+ * Стиль с одинаковым набором атрибутов создается в книге один раз и затем переиспользуется, поэтому
+ * число записей в таблице стилей (styles.xml) не зависит от количества колонок и строк. Реестр
+ * привязан к книге, для которой создан: стили другой книги к ее ячейкам применять нельзя.
+ * Экземпляр не потокобезопасен, как и сама рабочая книга.
+ */
+public class StyleRegistry {
+    /**
+     * Цвет шрифта по умолчанию или отсутствие заливки.
+     */
+    public static final short NONE = -1;
+
+    /**
+     * Атрибуты стиля, по которым стили считаются одинаковыми.
+     *
+     * @param bold       Полужирный шрифт.
+     * @param fontColor  Индекс цвета шрифта {@link IndexedColors} или {@link #NONE}.
+     * @param fillColor  Индекс цвета сплошной заливки {@link IndexedColors} или {@link #NONE}.
+     * @param dataFormat Строка формата чисел или {@code null} для общего формата.
+     */
+    public record StyleKey(boolean bold, short fontColor, short fillColor, String dataFormat) {
+        public static final StyleKey BOLD = new StyleKey(true, NONE, NONE, null);
+    }
+
+    private record FontKey(boolean bold, short color) {
+    }
+
+    private final Workbook workbook;
+    private final Map<StyleKey, CellStyle> styles = new HashMap<>();
+    private final Map<FontKey, Font> fonts = new HashMap<>();
+
+    public StyleRegistry(Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    /**
+     * Возвращает стиль с указанными атрибутами, создавая его при первом обращении.
+     *
+     * @param key Атрибуты стиля.
+     * @return Стиль рабочей книги.
+     */
+    public CellStyle get(StyleKey key) {
+        return styles.computeIfAbsent(key, this::createStyle);
+    }
+
+    /**
+     * Полужирный стиль без заливки.
+     *
+     * @return Стиль рабочей книги.
+     */
+    public CellStyle bold() {
+        return get(StyleKey.BOLD);
+    }
+
+    /**
+     * Полужирный стиль с цветом шрифта.
+     *
+     * @param fontColor Цвет шрифта.
+     * @return Стиль рабочей книги.
+     */
+    public CellStyle bold(IndexedColors fontColor) {
+        return get(new StyleKey(true, fontColor.getIndex(), NONE, null));
+    }
+
+    /**
+     * Полужирный стиль со сплошной заливкой.
+     *
+     * @param fillColor Цвет заливки.
+     * @return Стиль рабочей книги.
+     */
+    public CellStyle boldFilled(IndexedColors fillColor) {
+        return get(new StyleKey(true, NONE, fillColor.getIndex(), null));
+    }
+
+    /**
+     * Стиль с форматом чисел (например, формат даты) без выделения шрифтом.
+     *
+     * @param dataFormat Строка формата.
+     * @return Стиль рабочей книги.
+     */
+    public CellStyle dataFormat(String dataFormat) {
+        return get(new StyleKey(false, NONE, NONE, dataFormat));
+    }
+
+    /**
+     * Количество созданных стилей.
+     *
+     * @return Число различных стилей в реестре.
+     */
+    public int size() {
+        return styles.size();
+    }
+
+    private CellStyle createStyle(StyleKey key) {
+        CellStyle style = workbook.createCellStyle();
+        if (key.bold() || key.fontColor() != NONE) {
+            style.setFont(fonts.computeIfAbsent(new FontKey(key.bold(), key.fontColor()), this::createFont));
+        }
+        if (key.fillColor() != NONE) {
+            style.setFillForegroundColor(key.fillColor());
+            style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        }
+        if (key.dataFormat() != null) {
+            style.setDataFormat(workbook.createDataFormat().getFormat(key.dataFormat()));
+        }
+        return style;
+    }
+
+    private Font createFont(FontKey key) {
+        Font font = workbook.createFont();
+        font.setBold(key.bold());
+        if (key.color() != NONE) {
+            font.setColor(key.color());
+        }
+        return font;
+    }
+}
@@ -0,0 +1,405 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Дисковый кэш разобранных листов.
+ * <p>
+ * При первом чтении файла события {@link SheetRowHandler} от исходного {@link RowSource} передаются потребителю
+ * и одновременно собираются в колоночном двоичном виде: номера строк, словарь строк, а для каждого столбца -
+ * типы ячеек, числа и коды строк подряд. Повторное чтение того же файла отображает запись кэша в память и
+ * воспроизводит те же события, XML и BIFF при этом не разбираются. Запись кэша не зависит от ключа, поэтому
+ * один файл кэша подходит любому потребителю первого листа.
+ * <p>
+ * Ключ записи - SHA-256 содержимого файла, время его изменения и способ чтения: потоковые читатели и объектная
+ * модель POI могут по-разному передавать отдельные ячейки, поэтому их записи не смешиваются. Листы, запись
+ * которых больше 2 ГиБ, не кэшируются. Размер каталога ограничен: после добавления
+ * записи удаляются давно не использованные (время изменения записи обновляется при каждом чтении).
+ * Кэш включается системным свойством {@code datamerge.cacheDirectory}, предел задается {@code datamerge.cacheMaxBytes}.
+ */
+public class TableCache {
+    private static final Logger logger = LoggerFactory.getLogger(TableCache.class);
+    private static final long MAGIC = 0x444d5441424c4531L; // "DMTABLE1"
+    // Версия 2: даты книг в системе 1904 хранятся в системе 1900
+    private static final int VERSION = 2;
+    private static final String EXTENSION = ".dmt";
+
+    private static final byte BLANK = 0;
+    private static final byte STRING = 1;
+    private static final byte NUMBER = 2;
+    private static final byte DATE = 3;
+    private static final byte FALSE = 4;
+    private static final byte TRUE = 5;
+
+    private static final TableCache DEFAULT = createDefault();
+
+    private final Path directory;
+    private final long maxBytes;
+
+    /**
+     * Создает кэш в каталоге.
+     *
+     * @param directory Каталог записей (создается при первой записи).
+     * @param maxBytes  Предельный суммарный размер записей.
+     */
+    public TableCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    private static TableCache createDefault() {
+        String directory = System.getProperty("datamerge.cacheDirectory");
+        if (directory == null || directory.isBlank()) {
+            return null;
+        }
+        return new TableCache(Paths.get(directory), Long.getLong("datamerge.cacheMaxBytes", 1L << 30));
+    }
+
+    /**
+     * Источник {@link RowSource#of(String, boolean)} с кэшем, настроенным системными свойствами.
+     * Без {@code datamerge.cacheDirectory} источник возвращается без кэша.
+     *
+     * @param filePath  Путь к исходному файлу.
+     * @param streaming Читать файл потоково.
+     * @return Источник с кэшем или исходный источник.
+     */
+    public static RowSource wrap(String filePath, boolean streaming) {
+        RowSource parser = RowSource.of(filePath, streaming);
+        return DEFAULT == null ? parser : DEFAULT.cached(filePath, sourceKind(streaming), parser);
+    }
+
+    /**
+     * Обозначение способа чтения в имени записи.
+     *
+     * @param streaming Потоковое чтение.
+     * @return Обозначение способа чтения.
+     */
+    public static String sourceKind(boolean streaming) {
+        return streaming ? "stream" : "model";
+    }
+
+    /**
+     * Источник, который читает запись кэша для файла, а при ее отсутствии разбирает файл и сохраняет запись.
+     * Ошибки кэша не прерывают чтение: файл в этом случае разбирается заново.
+     *
+     * @param filePath Путь к исходному файлу.
+     * @param kind     Способ чтения файла (см. {@link #sourceKind(boolean)}), входит в имя записи.
+     * @param parser   Источник, разбирающий файл.
+     * @return Источник с кэшем.
+     */
+    public RowSource cached(String filePath, String kind, RowSource parser) {
+        return handler -> {
+            Path entry = directory.resolve(entryName(Paths.get(filePath), kind));
+            if (Files.isRegularFile(entry)) {
+                boolean replayed = false;
+                try {
+                    // Структура записи проверяется до передачи первой строки, поэтому при ошибке строки не дублируются
+                    replay(entry, handler);
+                    replayed = true;
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Запись кэша {} не читается и будет пересоздана: {}", entry, e.getMessage());
+                    deleteQuietly(entry);
+                }
+                if (replayed) {
+                    touch(entry);
+                    logger.info("Файл {} прочитан из кэша {}", filePath, entry.getFileName());
+                    return;
+                }
+            }
+            Capture capture = new Capture(handler);
+            parser.read(capture);
+            try {
+                store(capture, entry);
+                evict();
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Не удалось сохранить запись кэша {}: {}", entry, e.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Имя записи: SHA-256 содержимого, время изменения файла и способ чтения.
+     */
+    private static String entryName(Path file, String kind) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest()) + "-" + Files.getLastModifiedTime(file).toMillis() + "-" + kind + EXTENSION;
+    }
+
+    private static void replay(Path entry, SheetRowHandler handler) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getLong() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("неизвестный формат записи");
+        }
+        int rowCount = buffer.getInt();
+        int columnCount = buffer.getInt();
+        int dictionarySize = buffer.getInt();
+
+        int[] rowNums = new int[rowCount];
+        buffer.asIntBuffer().get(rowNums);
+        buffer.position(buffer.position() + rowCount * Integer.BYTES);
+        String[] dictionary = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        // Смещения массивов каждого столбца; курсоры чисел и кодов сдвигаются по мере воспроизведения
+        int[] kinds = new int[columnCount];
+        int[] numbers = new int[columnCount];
+        int[] codes = new int[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            int numberCount = buffer.getInt();
+            int codeCount = buffer.getInt();
+            kinds[column] = buffer.position();
+            numbers[column] = kinds[column] + rowCount;
+            codes[column] = numbers[column] + numberCount * Double.BYTES;
+            buffer.position(codes[column] + codeCount * Integer.BYTES);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("лишние данные в конце записи");
+        }
+
+        for (int row = 0; row < rowCount; row++) {
+            handler.startRow(rowNums[row]);
+            for (int column = 0; column < columnCount; column++) {
+                switch (buffer.get(kinds[column] + row)) {
+                    case STRING -> {
+                        handler.stringCell(column, dictionary[buffer.getInt(codes[column])]);
+                        codes[column] += Integer.BYTES;
+                    }
+                    case NUMBER, DATE -> {
+                        handler.numericCell(column, buffer.getDouble(numbers[column]), buffer.get(kinds[column] + row) == DATE);
+                        numbers[column] += Double.BYTES;
+                    }
+                    case FALSE -> handler.booleanCell(column, false);
+                    case TRUE -> handler.booleanCell(column, true);
+                    default -> {
+                    }
+                }
+            }
+            handler.endRow(rowNums[row]);
+        }
+    }
+
+    private void store(Capture capture, Path entry) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(capture.dictionary.size());
+        long size = Long.BYTES + 4L * Integer.BYTES + (long) capture.rowCount * Integer.BYTES;
+        for (String value : capture.dictionary) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            size += Integer.BYTES + bytes.length;
+        }
+        for (CapturedColumn column : capture.columns) {
+            size += 2L * Integer.BYTES + capture.rowCount + (long) column.numberCount * Double.BYTES + (long) column.codes.size() * Integer.BYTES;
+        }
+        if (size > Integer.MAX_VALUE) {
+            // Запись отображается в память одним буфером, а он не может быть больше 2 ГиБ
+            logger.info("Запись кэша {} не сохраняется: {} байт больше предела отображения в память", entry.getFileName(), size);
+            return;
+        }
+        Files.createDirectories(directory);
+
+        Path temp = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putLong(MAGIC).putInt(VERSION).putInt(capture.rowCount).putInt(capture.columns.size()).putInt(encoded.size());
+                for (int i = 0; i < capture.rowCount; i++) {
+                    buffer.putInt(capture.rowNums.get(i));
+                }
+                for (byte[] bytes : encoded) {
+                    buffer.putInt(bytes.length).put(bytes);
+                }
+                for (CapturedColumn column : capture.columns) {
+                    buffer.putInt(column.numberCount).putInt(column.codes.size());
+                    int filled = Math.min(column.kinds.length, capture.rowCount);
+                    buffer.put(column.kinds, 0, filled);
+                    // Строки после последней непустой ячейки столбца дополняются пустыми ячейками
+                    for (int i = filled; i < capture.rowCount; i++) {
+                        buffer.put(BLANK);
+                    }
+                    for (int i = 0; i < column.numberCount; i++) {
+                        buffer.putDouble(column.numbers[i]);
+                    }
+                    for (int i = 0; i < column.codes.size(); i++) {
+                        buffer.putInt(column.codes.get(i));
+                    }
+                }
+                buffer.force();
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            deleteQuietly(temp);
+        }
+        logger.info("Запись кэша {} сохранена ({} байт)", entry.getFileName(), size);
+    }
+
+    /**
+     * Удаляет давно не использованные записи, пока суммарный размер превышает предел.
+     */
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        Map<Path, FileTime> used = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path entry : stream) {
+                try {
+                    used.put(entry, Files.getLastModifiedTime(entry));
+                    total += Files.size(entry);
+                    entries.add(entry);
+                } catch (NoSuchFileException e) {
+                    // Запись удалена параллельным запуском
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(used::get));
+        for (Path entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            long size = Files.size(entry);
+            if (deleteQuietly(entry)) {
+                total -= size;
+                logger.info("Запись кэша {} удалена по размеру кэша", entry.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Отмечает использование записи для вытеснения давно не использованных.
+     */
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.warn("Не удалось обновить время использования записи кэша {}: {}", entry, e.getMessage());
+        }
+    }
+
+    private static boolean deleteQuietly(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Не удалось удалить файл {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Передает события потребителю и собирает их по столбцам для записи кэша.
+     */
+    private static class Capture implements SheetRowHandler {
+        private final SheetRowHandler target;
+        private final IntList rowNums = new IntList();
+        private final List<CapturedColumn> columns = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int rowCount;
+
+        Capture(SheetRowHandler target) {
+            this.target = target;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            rowNums.add(rowNum);
+            target.startRow(rowNum);
+        }
+
+        @Override
+        public void stringCell(int columnIndex, String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codes.put(value, code);
+            }
+            column(columnIndex).kind(rowCount, STRING).codes.add(code);
+            target.stringCell(columnIndex, value);
+        }
+
+        @Override
+        public void numericCell(int columnIndex, double value, boolean date) {
+            column(columnIndex).kind(rowCount, date ? DATE : NUMBER).addNumber(value);
+            target.numericCell(columnIndex, value, date);
+        }
+
+        @Override
+        public void booleanCell(int columnIndex, boolean value) {
+            column(columnIndex).kind(rowCount, value ? TRUE : FALSE);
+            target.booleanCell(columnIndex, value);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            rowCount++;
+            target.endRow(rowNum);
+        }
+
+        private CapturedColumn column(int columnIndex) {
+            while (columns.size() <= columnIndex) {
+                columns.add(new CapturedColumn());
+            }
+            return columns.get(columnIndex);
+        }
+    }
+
+    /**
+     * Собранный столбец: тип ячейки на каждую строку, числа и коды строк в порядке строк.
+     */
+    private static class CapturedColumn {
+        private byte[] kinds = new byte[0];
+        private double[] numbers = new double[16];
+        private int numberCount;
+        private final IntList codes = new IntList();
+
+        CapturedColumn kind(int row, byte kind) {
+            if (row >= kinds.length) {
+                kinds = Arrays.copyOf(kinds, Math.max(row + 1, kinds.length * 2));
+            }
+            kinds[row] = kind;
+            return this;
+        }
+
+        void addNumber(double value) {
+            if (numberCount == numbers.length) {
+                numbers = Arrays.copyOf(numbers, numberCount * 2);
+            }
+            numbers[numberCount++] = value;
+        }
+    }
+}
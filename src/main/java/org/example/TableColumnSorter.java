@@ -10,30 +10,45 @@ import java.util.*;
 
 import static org.example.ExcelUtils.setCellValue;
 
+/**
+ * Перестановка столбцов объединенной таблицы: связанные столбцы из {@link ColumnPairingRules} располагаются рядом.
+ * <p>
+ * Порядок столбцов вычисляется один раз по заголовку ({@link ColumnPairingRules#columnOrder(String[], String)}), затем
+ * каждая строка переносится один раз сразу во всех столбцах. В конвейере {@link MergePipeline} тот же порядок
+ * применяется к представлению таблицы без копирования ячеек.
+ */
 public class TableColumnSorter {
     private static final Logger logger = LoggerFactory.getLogger(TableColumnSorter.class);
 
-    public static void sortColumnsByHeaders(Workbook workbook, String sheetName) {
-        // Пары заголовков, которые нужно расположить рядом
-        List<String[]> headerPairs = Arrays.asList(
-                new String[]{"Структурное подразделение", "Подразделение ДО"},
-                new String[]{"Код позиции", "Код подрядчика"},
-                new String[]{"Инвентарный номер", "Инм.№"},
-                new String[]{"Наименование МТР", "Полное наименование"},
-                new String[]{"Содержание работ.Сводный код XYZ", "XYZ (from file2)"},
-                new String[]{"Объект работ", "Наименование объекта"},
-                new String[]{"Содержание работ (from file1)", "Содержание работ (from file2)"},
-                new String[]{"Спецификация поставщика (from file1)", "№ спец (from file2)"},
-                new String[]{"Поставщик (from file1)", "Поставщик (from file2)"},
-                new String[]{"Доходный договор (from file1)", "№ договора подряда (from file2)"},
-                new String[]{"Количество (from file1)","Ед. (from file1)"},
-                new String[]{"Акт. кол. (from file2)", "Ед. изм. (from file2)"},
-                new String[]{"Вид работ (from file1)", "Вид работ (from file2)"},
-                new String[]{"Принципал", "ДО (from file2)"},
-                new String[]{"ППП", "Код позиции"}
-                // Добавьте больше пар по необходимости
-        );
+    /**
+     * Переставляет столбцы листа на лист "SortedData" по правилам {@link ColumnPairingRules#configured()}
+     * и записывает рабочую книгу в файл. Лист переставляется в загруженной рабочей книге; для потоковой записи
+     * порядок столбцов задается в {@link MergePipeline#sortColumns(String, String, ColumnPairingRules)}.
+     *
+     * @param workbook   Рабочая книга.
+     * @param sheetName  Имя листа с исходными данными.
+     * @param outputPath Путь к файлу результата.
+     * @throws IOException Если файл правил не удалось загрузить или файл результата не удалось записать.
+     */
+    public static void sortColumnsByHeaders(Workbook workbook, String sheetName, String outputPath) throws IOException {
+        sortColumns(workbook, sheetName, ColumnPairingRules.configured());
 
+        // Записываем рабочую книгу в файл
+        try (FileOutputStream fileOut = new FileOutputStream(outputPath)) {
+            workbook.write(fileOut);
+        }
+        logger.info("Столбцы листа {} отсортированы, результат сохранен в {}", sheetName, outputPath);
+    }
+
+    /**
+     * Переставляет столбцы листа на лист "SortedData" той же рабочей книги без записи в файл.
+     *
+     * @param workbook  Рабочая книга.
+     * @param sheetName Имя листа с исходными данными.
+     * @param rules     Правила расположения столбцов.
+     * @return Лист с отсортированными столбцами.
+     */
+    static Sheet sortColumns(Workbook workbook, String sheetName, ColumnPairingRules rules) {
         // Получаем лист по имени
         Sheet sheet = workbook.getSheet(sheetName);
         if (sheet == null) {
@@ -52,85 +67,27 @@ public class TableColumnSorter {
 
         // Получаем заголовки из первой строки
         Row headerRow = sheet.getRow(0);
-        Map<String, Integer> headerIndexMap = new HashMap<>();
-
-        // Создаем карту соответствия заголовков и их индексов
-        for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-            Cell cell = headerRow.getCell(i);
-            String cellValue = getCellValueAsString(cell);
-            headerIndexMap.put(cellValue, i);
+        String[] headers = new String[headerRow.getLastCellNum()];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = CellValues.asString(headerRow.getCell(i));
         }
 
-        // Список для хранения пар с индексами
-        List<int[]> indexPairs = new ArrayList<>();
-
-        // Перебираем пары заголовков и определяем индексы
-        for (String[] pair : headerPairs) {
-            String header1 = pair[0];
-            String header2 = pair[1];
-
-            int index1 = findHeaderIndex(headerIndexMap, header1);
-            int index2 = findHeaderIndex(headerIndexMap, header2);
-
-            if (index1 != -1 && index2 != -1) {
-                indexPairs.add(new int[]{index1, index2});
-            } else {
-                logger.warn("Заголовки '{}' и '{}' не найдены в листе '{}'", header1, header2, sheetName);
-            }
-        }
-
-        // Перемещаем пары столбцов в начало
-        int targetIndex = 0;
-        for (int[] indexes : indexPairs) {
-            int index1 = indexes[0];
-            int index2 = indexes[1];
-            moveColumn(sheet, sortedSheet, index1, targetIndex++);
-            moveColumn(sheet, sortedSheet, index2, targetIndex++);
-        }
-
-        // Перемещаем оставшиеся столбцы
-        for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-            if (!isIndexInPairs(i, indexPairs)) {
-                moveColumn(sheet, sortedSheet, i, targetIndex++);
-            }
-        }
-
-        // Записываем рабочую книгу в файл
-        try (FileOutputStream fileOut = new FileOutputStream("MergedData.xlsx")) {
-            workbook.write(fileOut);
-        } catch (IOException e) {
-            logger.error("Ошибка записи рабочей книги в файл", e);
-        }
-    }
-
-    private static boolean isIndexInPairs(int index, List<int[]> indexPairs) {
-        for (int[] pair : indexPairs) {
-            if (pair[0] == index || pair[1] == index) {
-                return true;
+        // Порядок вычисляется один раз, затем каждая строка переносится за одно обращение
+        int[] columnOrder = rules.columnOrder(headers, sheetName);
+        for (Row sourceRow : sheet) {
+            Row targetRow = sortedSheet.getRow(sourceRow.getRowNum());
+            if (targetRow == null) {
+                targetRow = sortedSheet.createRow(sourceRow.getRowNum());
             }
+            copyReordered(sourceRow, targetRow, columnOrder);
         }
-        return false;
+        return sortedSheet;
     }
 
-    private static void moveColumn(Sheet sourceSheet, Sheet targetSheet, int sourceIndex, int targetIndex) {
-        int lastRow = sourceSheet.getLastRowNum();
-
-        for (int i = 0; i <= lastRow; i++) {
-            Row sourceRow = sourceSheet.getRow(i);
-            Row targetRow = targetSheet.getRow(i);
-
-            if (sourceRow == null) {
-                continue; // Пропускаем пустые строки в исходном листе
-            }
-
-            if (targetRow == null) {
-                targetRow = targetSheet.createRow(i); // Создаем строку в целевом листе, если она отсутствует
-            }
-
-            // Переносим столбец
-            Cell sourceCell = sourceRow.getCell(sourceIndex);
+    private static void copyReordered(Row sourceRow, Row targetRow, int[] columnOrder) {
+        for (int targetIndex = 0; targetIndex < columnOrder.length; targetIndex++) {
+            Cell sourceCell = sourceRow.getCell(columnOrder[targetIndex]);
             Cell targetCell = targetRow.createCell(targetIndex);
-
             if (sourceCell != null) {
                 setCellValue(sourceCell, targetCell);
             } else {
@@ -138,29 +95,4 @@ public class TableColumnSorter {
             }
         }
     }
-
-
-    private static String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return "";
-        }
-        return switch (cell.getCellType()) {
-            case STRING -> cell.getStringCellValue();
-            case NUMERIC -> Double.toString(cell.getNumericCellValue());
-            case BOOLEAN -> Boolean.toString(cell.getBooleanCellValue());
-            case FORMULA -> cell.getCellFormula();
-            case BLANK -> "";
-            default -> cell.toString();
-        };
-    }
-
-    private static int findHeaderIndex(Map<String, Integer> headerIndexMap, String header) {
-        for (Map.Entry<String, Integer> entry : headerIndexMap.entrySet()) {
-            if (entry.getKey().contains(header)) {
-                return entry.getValue();
-            }
-        }
-        return -1;
-    }
-
 }
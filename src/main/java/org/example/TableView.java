@@ -0,0 +1,67 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * Табличные данные в памяти, доступные для чтения по номеру строки и столбца.
+ * <p>
+ * Строка заголовка в данные не входит. Представления (подмножество строк, объединение двух таблиц,
+ * перестановка столбцов) не копируют значения, а ссылаются на исходные {@link ColumnarTable}.
+ */
+public interface TableView {
+
+    String[] header();
+
+    int columnCount();
+
+    int rowCount();
+
+    /**
+     * Возвращает значение ячейки в виде строки.
+     *
+     * @param row    Номер строки.
+     * @param column Индекс колонки.
+     * @return Значение ячейки; пустая строка для пустых ячеек.
+     */
+    String getString(int row, int column);
+
+    /**
+     * Записывает значение ячейки в ячейку POI с сохранением типа.
+     *
+     * @param row        Номер строки.
+     * @param column     Индекс колонки.
+     * @param targetCell Целевая ячейка.
+     */
+    void writeCell(int row, int column, Cell targetCell);
+
+    /**
+     * Передает значение непустой ячейки обработчику строк с сохранением типа (по умолчанию - как строку).
+     *
+     * @param row          Номер строки.
+     * @param column       Индекс колонки.
+     * @param handler      Обработчик.
+     * @param targetColumn Индекс колонки, под которым значение передается обработчику.
+     */
+    default void readCell(int row, int column, SheetRowHandler handler, int targetColumn) {
+        String value = getString(row, column);
+        if (!value.isEmpty()) {
+            handler.stringCell(targetColumn, value);
+        }
+    }
+
+    /**
+     * Возвращает индекс столбца с заданным заголовком.
+     *
+     * @param headerValue Точное значение заголовка.
+     * @return Индекс столбца или -1, если заголовок не найден.
+     */
+    default int findColumn(String headerValue) {
+        String[] header = header();
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equals(headerValue)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
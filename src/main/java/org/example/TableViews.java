@@ -0,0 +1,191 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+import java.util.List;
+
+/**
+ * Представления {@link TableView} поверх других таблиц без копирования значений.
+ */
+public class TableViews {
+
+    /**
+     * Подмножество строк таблицы.
+     *
+     * @param source Исходная таблица.
+     * @param rows   Номера строк исходной таблицы в порядке вывода.
+     * @return Представление выбранных строк.
+     */
+    public static TableView rows(TableView source, int[] rows) {
+        return new TableView() {
+            @Override
+            public String[] header() {
+                return source.header();
+            }
+
+            @Override
+            public int columnCount() {
+                return source.columnCount();
+            }
+
+            @Override
+            public int rowCount() {
+                return rows.length;
+            }
+
+            @Override
+            public String getString(int row, int column) {
+                return source.getString(rows[row], column);
+            }
+
+            @Override
+            public void writeCell(int row, int column, Cell targetCell) {
+                source.writeCell(rows[row], column, targetCell);
+            }
+
+            @Override
+            public void readCell(int row, int column, SheetRowHandler handler, int targetColumn) {
+                source.readCell(rows[row], column, handler, targetColumn);
+            }
+        };
+    }
+
+    /**
+     * Объединение пар строк двух таблиц: столбцы левой таблицы, затем столбцы правой.
+     *
+     * @param left      Левая таблица.
+     * @param right     Правая таблица.
+     * @param leftRows  Номера строк левой таблицы.
+     * @param rightRows Номера строк правой таблицы той же длины.
+     * @param header    Заголовок объединенной таблицы.
+     * @return Представление объединенных строк.
+     */
+    public static TableView joined(TableView left, TableView right, int[] leftRows, int[] rightRows, String[] header) {
+        int leftWidth = left.columnCount();
+        return new TableView() {
+            @Override
+            public String[] header() {
+                return header;
+            }
+
+            @Override
+            public int columnCount() {
+                return leftWidth + right.columnCount();
+            }
+
+            @Override
+            public int rowCount() {
+                return leftRows.length;
+            }
+
+            @Override
+            public String getString(int row, int column) {
+                return column < leftWidth
+                        ? left.getString(leftRows[row], column)
+                        : right.getString(rightRows[row], column - leftWidth);
+            }
+
+            @Override
+            public void writeCell(int row, int column, Cell targetCell) {
+                if (column < leftWidth) {
+                    left.writeCell(leftRows[row], column, targetCell);
+                } else {
+                    right.writeCell(rightRows[row], column - leftWidth, targetCell);
+                }
+            }
+
+            @Override
+            public void readCell(int row, int column, SheetRowHandler handler, int targetColumn) {
+                if (column < leftWidth) {
+                    left.readCell(leftRows[row], column, handler, targetColumn);
+                } else {
+                    right.readCell(rightRows[row], column - leftWidth, handler, targetColumn);
+                }
+            }
+        };
+    }
+
+    /**
+     * Перестановка столбцов: столбец {@code i} результата берется из столбца {@code order[i]} источника.
+     * Индексы в {@code order} могут повторяться.
+     *
+     * @param source Исходная таблица.
+     * @param order  Индексы столбцов источника в порядке вывода.
+     * @return Представление с переставленными столбцами.
+     */
+    public static TableView columns(TableView source, int[] order) {
+        String[] sourceHeader = source.header();
+        String[] header = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            header[i] = sourceHeader[order[i]];
+        }
+        return new TableView() {
+            @Override
+            public String[] header() {
+                return header;
+            }
+
+            @Override
+            public int columnCount() {
+                return order.length;
+            }
+
+            @Override
+            public int rowCount() {
+                return source.rowCount();
+            }
+
+            @Override
+            public String getString(int row, int column) {
+                return source.getString(row, order[column]);
+            }
+
+            @Override
+            public void writeCell(int row, int column, Cell targetCell) {
+                source.writeCell(row, order[column], targetCell);
+            }
+
+            @Override
+            public void readCell(int row, int column, SheetRowHandler handler, int targetColumn) {
+                source.readCell(row, order[column], handler, targetColumn);
+            }
+        };
+    }
+
+    /**
+     * Таблица из одного строкового столбца.
+     *
+     * @param header Заголовок столбца.
+     * @param values Значения в порядке вывода.
+     * @return Представление списка значений.
+     */
+    public static TableView values(String header, List<String> values) {
+        String[] headerRow = {header};
+        return new TableView() {
+            @Override
+            public String[] header() {
+                return headerRow;
+            }
+
+            @Override
+            public int columnCount() {
+                return 1;
+            }
+
+            @Override
+            public int rowCount() {
+                return values.size();
+            }
+
+            @Override
+            public String getString(int row, int column) {
+                return values.get(row);
+            }
+
+            @Override
+            public void writeCell(int row, int column, Cell targetCell) {
+                targetCell.setCellValue(values.get(row));
+            }
+        };
+    }
+}
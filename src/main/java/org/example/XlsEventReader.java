@@ -0,0 +1,259 @@
+package org.example;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder.SheetRecordCollectingListener;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
+import org.apache.poi.hssf.record.*;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.formula.ptg.ExpPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Событийное чтение XLS через {@link HSSFEventFactory}: общая часть потокового чтения и конвертации.
+ * <p>
+ * Записи BIFF обрабатываются по одной, {@code HSSFWorkbook} не строится. Наследник получает начало
+ * и конец каждого листа и значения ячеек: строки общей таблицы, числа с форматом даты, логические
+ * значения и текст формул (общие формулы восстанавливаются по записям SHRFMLA; если формулу восстановить
+ * нельзя, передается кэшированный результат). Даты книг в системе 1904 передаются в системе дат 1900.
+ * Чтение можно остановить вызовом {@link #stop()}.
+ */
+abstract class XlsEventReader implements HSSFListener {
+    private static final Logger logger = LoggerFactory.getLogger(XlsEventReader.class);
+
+    private final FormatTrackingHSSFListener formatListener = new FormatTrackingHSSFListener(this);
+    private final SheetRecordCollectingListener workbookBuilder = new SheetRecordCollectingListener(formatListener);
+
+    private final List<BoundSheetRecord> boundSheets = new ArrayList<>();
+    private BoundSheetRecord[] orderedSheets;
+    private SSTRecord sharedStrings;
+    private int depth;
+    // Позиция в списке BOUNDSHEET (листы любого типа, включая диаграммы) и номер рабочего листа
+    private int boundSheetPosition = -1;
+    private int sheetIndex = -1;
+    private boolean inSheet;
+    private boolean stopped;
+    private boolean date1904;
+    // Общие формулы текущего листа и формула, ожидающая записи SHRFMLA или STRING
+    private final List<SharedFormulaRecord> sharedFormulas = new ArrayList<>();
+    private FormulaRecord pendingFormula;
+    private String pendingCachedString;
+
+    /**
+     * Обрабатывает все записи файла XLS (или записи до вызова {@link #stop()}).
+     *
+     * @param filePath Путь к файлу XLS.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    void process(String filePath) throws IOException {
+        try (POIFSFileSystem fileSystem = new POIFSFileSystem(new File(filePath), true)) {
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(workbookBuilder);
+            request.addListenerForAllRecords(new AbortableHSSFListener() {
+                @Override
+                public short abortableProcessRecord(org.apache.poi.hssf.record.Record record) {
+                    return stopped ? (short) 1 : 0;
+                }
+            });
+            new HSSFEventFactory().abortableProcessWorkbookEvents(request, fileSystem);
+        } catch (HSSFUserException e) {
+            throw new IOException("Ошибка потокового чтения файла " + filePath, e);
+        }
+    }
+
+    /**
+     * Останавливает чтение после текущей записи.
+     */
+    protected void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Начало листа.
+     *
+     * @param index Номер листа (с нуля).
+     * @param name  Имя листа.
+     */
+    protected abstract void startSheet(int index, String name);
+
+    /**
+     * Конец листа.
+     *
+     * @param index Номер листа (с нуля).
+     */
+    protected void endSheet(int index) {
+    }
+
+    protected abstract void stringCell(int row, int column, String value);
+
+    /**
+     * Числовая ячейка.
+     *
+     * @param row        Номер строки.
+     * @param column     Индекс колонки.
+     * @param value      Значение (дата - номер дня в системе дат 1900).
+     * @param dateFormat Строка формата, если это формат даты, иначе {@code null}.
+     */
+    protected abstract void numericCell(int row, int column, double value, String dateFormat);
+
+    protected abstract void booleanCell(int row, int column, boolean value);
+
+    protected abstract void formulaCell(int row, int column, String formula);
+
+    /**
+     * Пустая ячейка или ячейка с ошибкой.
+     */
+    protected void blankCell(int row, int column) {
+    }
+
+    @Override
+    public void processRecord(org.apache.poi.hssf.record.Record record) {
+        if (pendingFormula != null) {
+            if (record instanceof SharedFormulaRecord sharedFormula) {
+                sharedFormulas.add(sharedFormula);
+                return;
+            }
+            if (record instanceof StringRecord stringRecord) {
+                pendingCachedString = stringRecord.getString();
+                return;
+            }
+            FormulaRecord formula = pendingFormula;
+            pendingFormula = null;
+            writeFormula(formula, pendingCachedString);
+            pendingCachedString = null;
+        }
+
+        switch (record.getSid()) {
+            case BoundSheetRecord.sid -> boundSheets.add((BoundSheetRecord) record);
+            case SSTRecord.sid -> sharedStrings = (SSTRecord) record;
+            case DateWindow1904Record.sid -> date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+            case BOFRecord.sid -> {
+                depth++;
+                int type = ((BOFRecord) record).getType();
+                if (depth == 1 && type != BOFRecord.TYPE_WORKBOOK) {
+                    // Листы диаграмм и макросов занимают позицию в BOUNDSHEET, но не передаются наследнику
+                    boundSheetPosition++;
+                    if (type == BOFRecord.TYPE_WORKSHEET) {
+                        beginSheet();
+                    }
+                }
+            }
+            case EOFRecord.sid -> {
+                if (depth == 1 && inSheet) {
+                    inSheet = false;
+                    endSheet(sheetIndex);
+                }
+                depth--;
+            }
+            default -> {
+                if (inSheet && depth == 1) {
+                    processCellRecord(record);
+                }
+            }
+        }
+    }
+
+    private void processCellRecord(org.apache.poi.hssf.record.Record record) {
+        switch (record.getSid()) {
+            case SharedFormulaRecord.sid -> sharedFormulas.add((SharedFormulaRecord) record);
+            case LabelSSTRecord.sid -> {
+                LabelSSTRecord label = (LabelSSTRecord) record;
+                stringCell(label.getRow(), label.getColumn(), sharedStrings.getString(label.getSSTIndex()).getString());
+            }
+            case LabelRecord.sid -> {
+                LabelRecord label = (LabelRecord) record;
+                stringCell(label.getRow(), label.getColumn(), label.getValue());
+            }
+            case NumberRecord.sid -> {
+                NumberRecord number = (NumberRecord) record;
+                String format = formatListener.getFormatString(number);
+                boolean date = format != null && DateUtil.isADateFormat(formatListener.getFormatIndex(number), format);
+                double value = date && date1904 ? number.getValue() + CellValues.DATE1904_OFFSET : number.getValue();
+                numericCell(number.getRow(), number.getColumn(), value, date ? format : null);
+            }
+            case BoolErrRecord.sid -> {
+                BoolErrRecord boolErr = (BoolErrRecord) record;
+                if (boolErr.isBoolean()) {
+                    booleanCell(boolErr.getRow(), boolErr.getColumn(), boolErr.getBooleanValue());
+                } else {
+                    blankCell(boolErr.getRow(), boolErr.getColumn());
+                }
+            }
+            case BlankRecord.sid -> {
+                BlankRecord blank = (BlankRecord) record;
+                blankCell(blank.getRow(), blank.getColumn());
+            }
+            case FormulaRecord.sid -> pendingFormula = (FormulaRecord) record;
+            default -> {
+            }
+        }
+    }
+
+    private void beginSheet() {
+        if (orderedSheets == null) {
+            orderedSheets = BoundSheetRecord.orderByBofPosition(boundSheets);
+        }
+        sheetIndex++;
+        sharedFormulas.clear();
+        inSheet = true;
+        startSheet(sheetIndex, boundSheetPosition < orderedSheets.length
+                ? orderedSheets[boundSheetPosition].getSheetname() : "Sheet" + sheetIndex);
+    }
+
+    private void writeFormula(FormulaRecord formula, String cachedString) {
+        int row = formula.getRow();
+        int column = formula.getColumn();
+        String text = formulaText(formula);
+        if (text != null) {
+            formulaCell(row, column, text);
+            return;
+        }
+        // Формула не восстанавливается (например, формула массива): передается кэшированный результат
+        switch (formula.getCachedResultTypeEnum()) {
+            case NUMERIC -> numericCell(row, column, formula.getValue(), null);
+            case BOOLEAN -> booleanCell(row, column, formula.getCachedBooleanValue());
+            case STRING -> {
+                if (cachedString != null) {
+                    stringCell(row, column, cachedString);
+                } else {
+                    blankCell(row, column);
+                }
+            }
+            default -> blankCell(row, column);
+        }
+    }
+
+    private String formulaText(FormulaRecord formula) {
+        Ptg[] tokens = formula.getParsedExpression();
+        if (tokens.length == 1 && tokens[0] instanceof ExpPtg) {
+            tokens = null;
+            for (SharedFormulaRecord sharedFormula : sharedFormulas) {
+                if (sharedFormula.isInRange(formula.getRow(), formula.getColumn())) {
+                    tokens = sharedFormula.getFormulaTokens(formula);
+                    break;
+                }
+            }
+            if (tokens == null) {
+                return null;
+            }
+        }
+        try {
+            return HSSFFormulaParser.toFormulaString(workbookBuilder.getStubHSSFWorkbook(), tokens);
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось восстановить формулу в ячейке R{}C{}: {}", formula.getRow() + 1, formula.getColumn() + 1, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -9,10 +9,38 @@ import org.slf4j.LoggerFactory;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class XlsToXlsxConverter {
     private static final Logger logger = LoggerFactory.getLogger(XlsToXlsxConverter.class);
 
+    /**
+     * Пакетная конвертация всех файлов XLS каталога.
+     *
+     * @param args каталог и (необязательно) число одновременно конвертируемых файлов
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            logger.error("Не указан каталог с файлами XLS.");
+            return;
+        }
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        try {
+            convertDirectory(args[0], parallelism);
+        } catch (IOException e) {
+            logger.error("Ошибка при пакетной конвертации", e);
+        }
+    }
+
     public static void convertXlsToXlsx(String inputFilePath, String outputFilePath) throws IOException {
         try (FileInputStream fis = new FileInputStream(inputFilePath);
              Workbook xlsWorkbook = new HSSFWorkbook(fis);
@@ -40,6 +68,80 @@ public class XlsToXlsxConverter {
         }
     }
 
+    /**
+     * Конвертирует все файлы XLS каталога в XLSX рядом с исходными. Одновременно обрабатывается не более
+     * {@code parallelism} файлов, каждый - потоковым конвертером с ограниченным потреблением памяти.
+     * Ошибка в одном файле не останавливает остальные.
+     *
+     * @param directory   Каталог с файлами XLS.
+     * @param parallelism Число одновременно конвертируемых файлов.
+     * @return Пути к созданным файлам XLSX.
+     * @throws IOException Если каталог не удалось прочитать или часть файлов не сконвертирована.
+     */
+    public static List<String> convertDirectory(String directory, int parallelism) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(directory), "*.xls")) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    inputs.add(file);
+                }
+            }
+        }
+        inputs.sort(null);
+        logger.info("Найдено {} файлов XLS в каталоге {}", inputs.size(), directory);
+
+        long start = System.nanoTime();
+        List<String> outputs = new ArrayList<>();
+        IOException failure = null;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            List<Future<String>> conversions = new ArrayList<>();
+            for (Path input : inputs) {
+                String inputPath = input.toString();
+                String outputPath = inputPath.substring(0, inputPath.length() - ".xls".length()) + ".xlsx";
+                conversions.add(executor.submit(() -> {
+                    StreamingXlsConverter.convert(inputPath, outputPath);
+                    return outputPath;
+                }));
+            }
+            for (int i = 0; i < conversions.size(); i++) {
+                try {
+                    outputs.add(await(conversions.get(i)));
+                } catch (IOException e) {
+                    logger.error("Не удалось сконвертировать файл {}", inputs.get(i), e);
+                    if (failure == null) {
+                        failure = new IOException("Часть файлов каталога " + directory + " не сконвертирована");
+                    }
+                    failure.addSuppressed(e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Сконвертировано {} из {} файлов за {} мс", outputs.size(), inputs.size(), (System.nanoTime() - start) / 1_000_000);
+        if (failure != null) {
+            throw failure;
+        }
+        return outputs;
+    }
+
+    /**
+     * Ожидает завершения задачи и разворачивает ее исключение.
+     */
+    private static <T> T await(Future<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Конвертация прервана", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Ошибка при конвертации", e.getCause());
+        }
+    }
+
     private static void copySheet(Sheet xlsSheet, Sheet xlsxSheet) {
         for (int i = 0; i < xlsSheet.getPhysicalNumberOfRows(); i++) {
             Row xlsRow = xlsSheet.getRow(i);
@@ -0,0 +1,70 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ColumnPairingRulesTest {
+
+    private static final String[] HEADERS = {
+            "Наименование (from file1)", "Код позиции (from file1)", "Количество (from file1)",
+            "Код позиции (from file2)", "Ед. изм. (from file2)", "Количество (from file2)"
+    };
+
+    /**
+     * Столбец, входящий в несколько пар, выводится в каждой из них; непарные столбцы следуют за парами
+     * в исходном порядке.
+     */
+    @Test
+    void columnSharedByPairsIsRepeated(@TempDir Path directory) throws IOException {
+        ColumnPairingRules rules = load(directory, """
+                {"pairs": [
+                  ["Код позиции (from file1)", "Код позиции (from file2)"],
+                  [{"exact": "Код позиции (from file1)"}, {"regex": "^Ед\\\\. изм\\\\."}]
+                ]}
+                """);
+
+        assertArrayEquals(new int[]{1, 3, 1, 4, 0, 2, 5}, rules.columnOrder(HEADERS, "MergedData"));
+    }
+
+    /**
+     * Шаблону соответствует первый подходящий заголовок, а пара без одного из столбцов пропускается.
+     */
+    @Test
+    void firstMatchWinsAndIncompletePairsAreSkipped(@TempDir Path directory) throws IOException {
+        ColumnPairingRules rules = load(directory, """
+                {"pairs": [
+                  [{"prefix": "Количество"}, "Код позиции"],
+                  ["Цена", "Наименование"]
+                ]}
+                """);
+
+        assertArrayEquals(new int[]{2, 1, 0, 3, 4, 5}, rules.columnOrder(HEADERS, "MergedData"));
+    }
+
+    @Test
+    void rejectsInvalidRules(@TempDir Path directory) throws IOException {
+        assertInvalid(directory, "{\"pairs\": [[\"Код\"]]}", "Пара должна быть массивом из двух шаблонов: [Код]");
+        assertInvalid(directory, "{\"pairs\": [[\"Код\", {\"suffix\": \"x\"}]]}", "Неизвестный вид шаблона: suffix");
+        assertInvalid(directory, "{\"pairs\": [[\"Код\", \"\"]]}", "Шаблон заголовка не может быть пустым.");
+        assertInvalid(directory, "[]", "Ожидался объект с массивом \"pairs\".");
+    }
+
+    private static void assertInvalid(Path directory, String json, String message) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> load(directory, json));
+        assertEquals(message, e.getMessage());
+    }
+
+    private static ColumnPairingRules load(Path directory, String json) throws IOException {
+        Path file = Files.writeString(directory.resolve("rules.json"), json, StandardCharsets.UTF_8);
+        return ColumnPairingRules.load(file);
+    }
+}
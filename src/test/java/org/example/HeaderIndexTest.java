@@ -0,0 +1,116 @@
+package org.example;
+
+import org.example.ColumnPairingRules.MatchType;
+import org.example.ColumnPairingRules.Matcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class HeaderIndexTest {
+
+    @Test
+    void exactRequiresWholeHeader() {
+        assertResolves(new int[]{2, -1},
+                List.of(exact("Код"), exact("Код позиции (from file1)")),
+                "Код позиции", "Старый код", "Код");
+    }
+
+    @Test
+    void prefixRequiresMatchAtStart() {
+        assertResolves(new int[]{1},
+                List.of(prefix("Кол")),
+                "Итого Кол", "Количество (from file1)");
+    }
+
+    @Test
+    void containsMatchesAnywhere() {
+        assertResolves(new int[]{1, 0},
+                List.of(contains("(from file2)"), contains("Наименование")),
+                "Наименование (from file1)", "Наименование (from file2)");
+    }
+
+    @Test
+    void regexMatchesByFind() {
+        assertResolves(new int[]{1, -1},
+                List.of(regex("^Ед\\.( изм\\.)? \\(from file1\\)$"), regex("^Цена$")),
+                "Цена (from file1)", "Ед. изм. (from file1)", "Ед. (from file1)");
+    }
+
+    /**
+     * Короткие шаблоны внутри длинного находятся через выходы, унаследованные по ссылкам неудач.
+     */
+    @Test
+    void overlappingPatternsAreReportedThroughFailLinks() {
+        assertResolves(new int[]{0, 0, 0, 0},
+                List.of(contains("abcd"), contains("bc"), contains("c"), contains("cd")),
+                "xabcd");
+    }
+
+    /**
+     * После несовпадения автомат переходит по ссылке неудачи и продолжает с более короткого префикса:
+     * в "aaab" шаблон "aab" начинается со второго символа.
+     */
+    @Test
+    void failLinkResumesFromShorterPrefix() {
+        assertResolves(new int[]{0, 0, -1},
+                List.of(contains("aab"), contains("ab"), prefix("aab")),
+                "aaab");
+    }
+
+    /**
+     * Вид совпадения проверяется по позиции каждого вхождения: шаблон начала, найденный в середине
+     * заголовка, не засчитывается, а следующий заголовок с тем же началом подходит.
+     */
+    @Test
+    void typeIsCheckedPerOccurrence() {
+        assertResolves(new int[]{1, 2, 0},
+                List.of(prefix("bc"), exact("bc"), contains("bc")),
+                "abc", "bcd", "bc");
+    }
+
+    @Test
+    void firstMatchingHeaderWins() {
+        assertResolves(new int[]{0, 1, 0},
+                List.of(contains("Код"), regex("подрядчика"), prefix("Код п")),
+                "Код позиции", "Код подрядчика", "Код подрядчика (from file2)");
+    }
+
+    /**
+     * Одинаковые шаблоны (например, из разных пар) получают один и тот же столбец.
+     */
+    @Test
+    void duplicatePatternsResolveToSameColumn() {
+        assertResolves(new int[]{1, 1, 1, 1},
+                List.of(contains("Код"), contains("Код"), regex("Код"), regex("Код")),
+                "Наименование", "Код позиции");
+    }
+
+    @Test
+    void missingHeadersAreTreatedAsEmpty() {
+        assertResolves(new int[]{2, -1},
+                List.of(contains("Цена"), exact("Цена")),
+                null, "", "Цена (from file2)");
+    }
+
+    private static void assertResolves(int[] expected, List<Matcher> matchers, String... headers) {
+        assertArrayEquals(expected, new HeaderIndex(matchers).resolve(headers));
+    }
+
+    private static Matcher exact(String pattern) {
+        return new Matcher(MatchType.EXACT, pattern);
+    }
+
+    private static Matcher prefix(String pattern) {
+        return new Matcher(MatchType.PREFIX, pattern);
+    }
+
+    private static Matcher contains(String pattern) {
+        return new Matcher(MatchType.CONTAINS, pattern);
+    }
+
+    private static Matcher regex(String pattern) {
+        return new Matcher(MatchType.REGEX, pattern);
+    }
+}
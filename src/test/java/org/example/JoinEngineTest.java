@@ -0,0 +1,76 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class JoinEngineTest {
+
+    /**
+     * Слева: A, A, B, C; справа: A, A, A, D.
+     */
+    private static final ColumnarTable LEFT = table("A", "A", "B", "C");
+    private static final ColumnarTable RIGHT = table("A", "A", "A", "D");
+
+    /**
+     * Каждая строка повторяющегося ключа слева образует пару с каждой строкой ключа справа,
+     * а несовпавшими остаются только строки ключей, которых нет в другой таблице.
+     */
+    @Test
+    void fullOuterPairsEveryRowOfDuplicateKey() {
+        JoinEngine.JoinResult result = join(JoinMode.FULL_OUTER);
+
+        assertArrayEquals(new int[]{0, 0, 0, 1, 1, 1}, result.leftMatched());
+        assertArrayEquals(new int[]{0, 1, 2, 0, 1, 2}, result.rightMatched());
+        assertArrayEquals(new int[]{2, 3}, result.leftOnly());
+        assertArrayEquals(new int[]{3}, result.rightOnly());
+    }
+
+    @Test
+    void innerAndLeftKeepOnlyRequestedUnmatchedRows() {
+        JoinEngine.JoinResult inner = join(JoinMode.INNER);
+        assertArrayEquals(new int[]{0, 0, 0, 1, 1, 1}, inner.leftMatched());
+        assertArrayEquals(new int[0], inner.leftOnly());
+        assertArrayEquals(new int[0], inner.rightOnly());
+
+        JoinEngine.JoinResult left = join(JoinMode.LEFT);
+        assertArrayEquals(new int[]{0, 1, 2, 0, 1, 2}, left.rightMatched());
+        assertArrayEquals(new int[]{2, 3}, left.leftOnly());
+        assertArrayEquals(new int[0], left.rightOnly());
+    }
+
+    /**
+     * В режиме {@link JoinMode#POSITIONAL} лишняя строка ключа A справа уходит в несовпавшие.
+     */
+    @Test
+    void positionalPairsRowsInOrder() {
+        JoinEngine.JoinResult result = join(JoinMode.POSITIONAL);
+
+        assertArrayEquals(new int[]{0, 1}, result.leftMatched());
+        assertArrayEquals(new int[]{0, 1}, result.rightMatched());
+        assertArrayEquals(new int[]{2, 3}, result.leftOnly());
+        assertArrayEquals(new int[]{2, 3}, result.rightOnly());
+    }
+
+    private static JoinEngine.JoinResult join(JoinMode mode) {
+        return JoinEngine.join(LEFT, RIGHT, mode, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Таблица из строки заголовка и строк с одним ключевым столбцом.
+     */
+    private static ColumnarTable table(String... keys) {
+        ColumnarTable.Builder builder = ColumnarTable.builder(KeySpec.column(0));
+        builder.startRow(0);
+        builder.stringCell(0, "Ключ");
+        builder.endRow(0);
+        for (int i = 0; i < keys.length; i++) {
+            builder.startRow(i + 1);
+            builder.stringCell(0, keys[i]);
+            builder.endRow(i + 1);
+        }
+        return builder.build();
+    }
+}
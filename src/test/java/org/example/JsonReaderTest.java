@@ -0,0 +1,74 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonReaderTest {
+
+    @Test
+    void parsesNestedValuesPreservingKeyOrder() {
+        Object value = JsonReader.parse(" {\"b\": [1, -2.5e1, true, false, null], \"a\": {}, \"c\": []} ");
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("b", Arrays.asList(1.0, -25.0, true, false, null));
+        expected.put("a", Map.of());
+        expected.put("c", List.of());
+        assertEquals(expected, value);
+        assertEquals(List.of("b", "a", "c"), List.copyOf(((Map<?, ?>) value).keySet()));
+        assertNull(JsonReader.parse("null"));
+    }
+
+    @Test
+    void decodesEscapes() {
+        assertEquals("\"\\/\b\f\n\r\t", JsonReader.parse("\"\\\"\\\\\\/\\b\\f\\n\\r\\t\""));
+        assertEquals("Код", JsonReader.parse("\"\\u041a\\u043E\\u0434\""));
+        assertEquals("Ед. (from file1)", JsonReader.parse("\"Ед.\\u0020(from file1)\""));
+        // Символ вне основной плоскости записывается суррогатной парой
+        assertEquals("\uD83D\uDE00", JsonReader.parse("\"\\ud83d\\ude00\""));
+    }
+
+    @Test
+    void rejectsMalformedUnicodeEscapes() {
+        assertMalformed("\"\\u12\"", "неполная escape-последовательность");
+        assertMalformed("\"\\u12zz\"", "некорректная escape-последовательность");
+        assertMalformed("\"\\u+041\"", "некорректная escape-последовательность");
+        assertMalformed("\"\\u-041\"", "некорректная escape-последовательность");
+        assertMalformed("\"\\x\"", "некорректная escape-последовательность");
+    }
+
+    @Test
+    void rejectsMalformedDocuments() {
+        assertMalformed("", "неожиданный конец текста");
+        assertMalformed("\"abc", "незакрытая строка");
+        assertMalformed("\"abc\\", "незакрытая строка");
+        assertMalformed("{\"a\" 1}", "ожидался символ ':'");
+        assertMalformed("{\"a\": 1", "ожидался символ '}'");
+        assertMalformed("{1: 2}", "ожидалось имя поля");
+        assertMalformed("{\"a\": 1,}", "ожидалось имя поля");
+        assertMalformed("[1 2]", "ожидался символ ']'");
+        assertMalformed("[1,]", "неизвестное значение");
+        assertMalformed("tru", "неизвестное значение");
+        assertMalformed("1e", "неизвестное значение");
+        assertMalformed("{} []", "лишние символы после значения");
+    }
+
+    @Test
+    void reportsErrorPosition() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> JsonReader.parse("[1, x]"));
+        assertEquals("Ошибка разбора JSON в позиции 4: неизвестное значение", e.getMessage());
+    }
+
+    private static void assertMalformed(String text, String reason) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> JsonReader.parse(text), text);
+        assertTrue(e.getMessage().endsWith(reason), e.getMessage());
+    }
+}
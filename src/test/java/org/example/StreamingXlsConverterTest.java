@@ -0,0 +1,39 @@
+package org.example;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingXlsConverterTest {
+
+    /**
+     * Файл с листами [Лист1, Диаграмма1, Лист2]: лист диаграммы занимает позицию в BOUNDSHEET,
+     * поэтому имя второго рабочего листа берется по позиции записи, а не по номеру рабочего листа.
+     */
+    @Test
+    void chartSheetDoesNotShiftWorksheetNames(@TempDir Path directory) throws IOException, URISyntaxException {
+        Path input = Paths.get(getClass().getResource("/chart-before-sheet.xls").toURI());
+        Path output = directory.resolve("converted.xlsx");
+
+        StreamingXlsConverter.convert(input.toString(), output.toString());
+
+        try (Workbook workbook = WorkbookFactory.create(output.toFile())) {
+            assertEquals(2, workbook.getNumberOfSheets());
+            Sheet first = workbook.getSheetAt(0);
+            Sheet second = workbook.getSheetAt(1);
+            assertEquals("Лист1", first.getSheetName());
+            assertEquals("А1", first.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("Лист2", second.getSheetName());
+            assertEquals(42.0, second.getRow(1).getCell(0).getNumericCellValue());
+        }
+    }
+}